@@ -0,0 +1,115 @@
+package code;
+
+/**
+ * Adjacency is a compressed-sparse-row (CSR) layout of the directed edges in
+ * the graph. The edges leaving node i (by its dense Node.index) are stored at
+ * positions offset[i] up to (but not including) offset[i + 1] of the target,
+ * segment, length and time arrays, so walking the neighbours of a node is just
+ * a loop over a range of ints with no allocation or hashing.
+ *
+ * A Graph keeps two of these: one for the forward direction of travel, and one
+ * for the backward direction (where an edge u -> v is stored under v with u as
+ * its target), which is what reverse searches need.
+ */
+public class Adjacency {
+
+	final int[] offset;
+	// dense index of the node at the other end of each edge.
+	final int[] target;
+	// dense index of the Segment each edge was made from.
+	final int[] segment;
+	// length of each edge in kilometres, and travel time in hours.
+	final double[] length;
+	final double[] time;
+
+	private Adjacency(int nodeCount, int edgeCount) {
+		this.offset = new int[nodeCount + 1];
+		this.target = new int[edgeCount];
+		this.segment = new int[edgeCount];
+		this.length = new double[edgeCount];
+		this.time = new double[edgeCount];
+	}
+
+	/**
+	 * Builds the adjacency for the given segments. Every segment becomes an
+	 * edge from its start node to its end node, and two-way segments also
+	 * become an edge in the other direction. If reverse is true, each edge is
+	 * stored under the node it points to instead of the node it leaves.
+	 */
+	static Adjacency build(int nodeCount, Segment[] segments, boolean reverse) {
+		// first pass: count the edges leaving each node.
+		int[] degree = new int[nodeCount];
+		int edgeCount = 0;
+		for (Segment s : segments) {
+			degree[reverse ? s.end.index : s.start.index]++;
+			edgeCount++;
+			if (!s.road.oneWay()) {
+				degree[reverse ? s.start.index : s.end.index]++;
+				edgeCount++;
+			}
+		}
+
+		Adjacency adj = new Adjacency(nodeCount, edgeCount);
+		for (int i = 0; i < nodeCount; i++)
+			adj.offset[i + 1] = adj.offset[i] + degree[i];
+
+		// second pass: fill each node's range, reusing degree as the cursor.
+		System.arraycopy(adj.offset, 0, degree, 0, nodeCount);
+		for (Segment s : segments) {
+			adj.add(degree, s, s.start, s.end, reverse);
+			if (!s.road.oneWay())
+				adj.add(degree, s, s.end, s.start, reverse);
+		}
+		return adj;
+	}
+
+	private void add(int[] cursor, Segment s, Node from, Node to, boolean reverse) {
+		int owner = reverse ? to.index : from.index;
+		int e = cursor[owner]++;
+		target[e] = reverse ? from.index : to.index;
+		segment[e] = s.index;
+		length[e] = s.length;
+		time[e] = s.length / s.road.speedKmh();
+	}
+
+	/**
+	 * Returns the position of the first edge of the given node.
+	 */
+	public int start(int node) {
+		return offset[node];
+	}
+
+	/**
+	 * Returns the position one past the last edge of the given node.
+	 */
+	public int end(int node) {
+		return offset[node + 1];
+	}
+
+	public int degree(int node) {
+		return offset[node + 1] - offset[node];
+	}
+
+	public int edgeCount() {
+		return target.length;
+	}
+
+	/**
+	 * Returns the node an edge is stored under, by binary search on the
+	 * offsets.
+	 */
+	public int source(int edge) {
+		// it's the last node whose edges start at or before this one.
+		int lo = 0, hi = offset.length - 2;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (offset[mid] <= edge)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,235 @@
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BatchRouter is the headless way into the routing engine, for running it
+ * from scripts. It loads the graph without any Swing, reads pairs of node IDs
+ * from a file or standard input, routes them on a pool of threads, and
+ * writes one line per query to standard output as the answers come in:
+ *
+ * <pre>
+ * line   source   target   distance   road:node:node,road:node:node,...
+ * </pre>
+ *
+ * where line is the query's line number in the input (answers can come out
+ * of order), the distance is in kilometres or "inf" if there's no route, and
+ * each segment is given by its road ID and two node IDs as they are in the
+ * segment file, so the output can be joined back to the data. A summary with
+ * throughput and latency percentiles goes to standard error at the end,
+ * counting the unreachable pairs the router turned away without searching.
+ *
+ * <pre>
+ * java code.BatchRouter data/large queries.txt --threads 8 --mode HIERARCHY
+ * </pre>
+ *
+ * With no query file, or "-", the queries are read from standard input. Blank
+ * lines and lines starting with # are skipped.
+ */
+public class BatchRouter {
+
+	// how many queries can be waiting for a thread before reading stops.
+	private static final int QUEUE_PER_THREAD = 64;
+
+	private final Graph graph;
+	private final Router router;
+	private final Router.Mode mode;
+	private final Writer out;
+
+	// how long each query took, from being picked up to being written, in
+	// nanoseconds, how many were answered with a route, and how many had
+	// none and were answered without searching.
+	private long[] latencies = new long[1024];
+	private int count, found, rejected;
+
+	private BatchRouter(Graph graph, Router.Mode mode, Writer out) {
+		this.graph = graph;
+		this.router = new Router(graph);
+		this.mode = mode;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws IOException {
+		File dir = null, queries = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Router.Mode mode = Router.Mode.BIDIRECTIONAL;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--threads") && i + 1 < args.length)
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--mode") && i + 1 < args.length)
+				mode = Router.Mode.valueOf(args[++i].toUpperCase());
+			else if (dir == null)
+				dir = new File(args[i]);
+			else if (queries == null && !args[i].equals("-"))
+				queries = new File(args[i]);
+		}
+		if (dir == null) {
+			System.err.println("usage: BatchRouter <data directory> [queries|-]"
+					+ " [--threads n] [--mode " + Arrays.toString(Router.Mode.values()) + "]");
+			System.exit(1);
+		}
+
+		long begin = System.nanoTime();
+		File restrictions = new File(dir, "restrictions.tab");
+		Graph graph = new Graph(new File(dir, "nodeID-lat-lon.tab"), new File(
+				dir, "roadID-roadInfo.tab"), new File(dir,
+				"roadSeg-roadID-length-nodeID-nodeID-coords.tab"), null,
+				restrictions.exists() ? restrictions : null);
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out,
+				StandardCharsets.UTF_8), 1 << 16);
+		BatchRouter batch = new BatchRouter(graph, mode, out);
+		if (mode == Router.Mode.HIERARCHY)
+			graph.hierarchy();
+		System.err.printf("loaded %d nodes in %.0f ms%n",
+				graph.nodeArray.length, (System.nanoTime() - begin) / 1e6);
+
+		InputStream in = queries == null ? System.in : new FileInputStream(
+				queries);
+		try {
+			batch.run(in, threads);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads and routes every query in the input, then prints the summary.
+	 */
+	private void run(InputStream in, int threads) throws IOException {
+		// a bounded queue, with the reading thread routing for itself when it
+		// fills, so a huge input file isn't all read in at once.
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(threads
+						* QUEUE_PER_THREAD),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+
+		long begin = System.nanoTime();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+				StandardCharsets.UTF_8));
+		String line;
+		int lineNumber = 0;
+		try {
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				final String[] fields = line.split("[\\s,]+");
+				final int number = lineNumber;
+				pool.execute(new Runnable() {
+					public void run() {
+						answer(number, fields);
+					}
+				});
+			}
+		} finally {
+			pool.shutdown();
+		}
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.flush();
+		report(System.nanoTime() - begin);
+	}
+
+	/**
+	 * Routes one query and writes out its answer.
+	 */
+	private void answer(int number, String[] fields) {
+		long begin = System.nanoTime();
+		StringBuilder sb = new StringBuilder();
+		sb.append(number).append('\t');
+		Node start = null, goal = null;
+		try {
+			start = graph.nodes.get(Integer.parseInt(fields[0]));
+			goal = graph.nodes.get(Integer.parseInt(fields[1]));
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			// reported as unknown below.
+		}
+
+		boolean isFound = false, isRejected = false;
+		if (start == null || goal == null) {
+			sb.append(fields[0]).append('\t')
+					.append(fields.length > 1 ? fields[1] : "").append('\t')
+					.append("unknown");
+		} else {
+			Router.Route route = router.route(start, goal, mode);
+			sb.append(start.nodeID).append('\t').append(goal.nodeID)
+					.append('\t');
+			isFound = route.found();
+			if (isFound) {
+				sb.append(route.length).append('\t');
+				for (int i = 0; i < route.segments.size(); i++) {
+					Segment seg = route.segments.get(i);
+					if (i > 0)
+						sb.append(',');
+					sb.append(seg.road.roadID).append(':')
+							.append(seg.start.nodeID).append(':')
+							.append(seg.end.nodeID);
+				}
+			} else {
+				// the router searches nothing for a pair its component
+				// labels rule out.
+				isRejected = route.expanded == 0;
+				sb.append("inf");
+			}
+		}
+		sb.append('\n');
+
+		synchronized (this) {
+			try {
+				out.write(sb.toString());
+			} catch (IOException e) {
+				throw new RuntimeException("writing results failed.", e);
+			}
+			if (count == latencies.length)
+				latencies = Arrays.copyOf(latencies, count * 2);
+			latencies[count++] = System.nanoTime() - begin;
+			if (isFound)
+				found++;
+			if (isRejected)
+				rejected++;
+		}
+	}
+
+	private synchronized void report(long nanos) {
+		double seconds = nanos / 1e9;
+		System.err.printf(
+				"%d queries (%d routed, %d unreachable by component) in %.2f s, %.0f queries/s%n",
+				count, found, rejected, seconds, count / seconds);
+		if (count == 0)
+			return;
+		long[] sorted = Arrays.copyOf(latencies, count);
+		Arrays.sort(sorted);
+		System.err.printf(
+				"latency ms: p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+				percentile(sorted, 50), percentile(sorted, 90),
+				percentile(sorted, 99), percentile(sorted, 99.9),
+				sorted[count - 1] / 1e6);
+	}
+
+	/**
+	 * The nearest-rank percentile of some sorted latencies, in milliseconds.
+	 */
+	private static double percentile(long[] sorted, double p) {
+		int rank = (int) Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,780 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Biconnectivity finds the weak points of the road network, ignoring one-way
+ * restrictions: the articulation points (intersections whose removal cuts some
+ * roads off from others), the bridges (segments whose removal does the same),
+ * and the biconnected blocks, the groups of segments that stay connected when
+ * any one intersection is removed. Every open segment is in exactly one block,
+ * except one that loops back to the node it starts from, which is in none.
+ *
+ * It works over the whole graph at once with Tarjan's algorithm, done with an
+ * explicit stack over int arrays rather than by recursion, so a long road
+ * can't overflow the call stack. The graph is first split into its connected
+ * components, which are independent of each other and are searched in
+ * parallel, a batch of them per task.
+ *
+ * The blocks are kept as a block-cut forest, so that closing and reopening
+ * segments can be kept up with rather than started again. Each block hangs
+ * from its head, the node it shares with the block above it (the root block
+ * of each tree has none), and each node has a home, the block it hangs from
+ * in turn. A node in more than one block is an articulation point. Closing a
+ * segment only searches again the block it was in, which may break up, and
+ * reopening one merges the blocks on the path through the forest between its
+ * ends, relabelling the smaller ones. Block numbers aren't kept from one
+ * change to the next.
+ */
+public class Biconnectivity {
+
+	// how many batches of components to make per thread, so that one big
+	// component doesn't leave the other threads with nothing to do.
+	private static final int BATCHES_PER_THREAD = 4;
+	// the block of a segment in a block being searched again.
+	private static final int PENDING = -2;
+
+	private final Segment[] segments;
+	private final int nodeCount;
+	// every segment at each node, either end, with the node at the other end.
+	private final int[] offset, other, edge;
+	// the segments closed in the graph, which are left out. this is our own
+	// copy, kept in step by remove and add.
+	private final boolean[] closed;
+
+	// the depth of each node in the search tree, counting from 1 so that 0
+	// is unvisited, the shallowest depth its subtree reaches back to, and the
+	// segment it was reached by. each search only touches its own nodes.
+	private final int[] depth, low, parent;
+
+	// the block of each segment, or -1, and the next segment in the same
+	// block, each block's segments making a ring.
+	private final int[] block, nextInBlock;
+	// the block each node hangs from, or -1 if it has no open segments, and
+	// how many blocks it's in.
+	private final int[] home, blocksAt;
+	// each block's head (or -1), size, and one of its segments. the numbers
+	// of blocks that have been merged away or broken up are reused.
+	private int[] head = new int[16], size = new int[16], first = new int[16];
+	private int[] free = new int[16];
+	private int blockLimit, freeCount;
+
+	private int articulationCount, bridgeCount, blockCount, componentCount;
+
+	// scratch space for the changes, so they allocate nothing once grown.
+	private int[] stack = new int[16], next = new int[16], edges = new int[16];
+	private int[] nodes = new int[16], merged = new int[16];
+	private final int[][] path = { new int[16], new int[16] };
+	// which end of a reopened segment got to each node and block first, and
+	// how far along its path it was.
+	private final int[] nodeMark, nodeAt;
+	private int[] blockMark = new int[16], blockAt = new int[16];
+	private int epoch;
+
+	private Biconnectivity(Segment[] segments, int nodeCount, long[] closed) {
+		this.segments = segments;
+		this.nodeCount = nodeCount;
+		this.closed = new boolean[segments.length];
+		for (int s = 0; s < segments.length; s++)
+			this.closed[s] = Graph.isClosed(closed, s);
+		this.offset = new int[nodeCount + 1];
+		for (Segment s : segments) {
+			offset[s.start.index + 1]++;
+			offset[s.end.index + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++)
+			offset[i + 1] += offset[i];
+		this.other = new int[offset[nodeCount]];
+		this.edge = new int[offset[nodeCount]];
+		int[] cursor = Arrays.copyOf(offset, nodeCount);
+		for (Segment s : segments) {
+			int a = s.start.index, b = s.end.index;
+			other[cursor[a]] = b;
+			edge[cursor[a]++] = s.index;
+			other[cursor[b]] = a;
+			edge[cursor[b]++] = s.index;
+		}
+
+		this.depth = new int[nodeCount];
+		this.low = new int[nodeCount];
+		this.parent = new int[nodeCount];
+		this.block = new int[segments.length];
+		this.nextInBlock = new int[segments.length];
+		this.home = new int[nodeCount];
+		this.blocksAt = new int[nodeCount];
+		this.nodeMark = new int[nodeCount];
+		this.nodeAt = new int[nodeCount];
+		Arrays.fill(block, -1);
+		Arrays.fill(home, -1);
+	}
+
+	/**
+	 * Finds the articulation points, bridges and blocks of the open segments
+	 * of the whole graph, searching its components in parallel on the pool.
+	 */
+	public static Biconnectivity build(Graph graph, long[] closed,
+			ExecutorService pool, int threads) {
+		final Biconnectivity bc = new Biconnectivity(graph.segmentArray,
+				graph.nodeArray.length, closed);
+		int[] component = new int[bc.nodeCount];
+		final int[] order = new int[bc.nodeCount];
+		final int[] starts = bc.findComponents(component, order);
+
+		// batch up whole components in order until each batch has its share
+		// of the nodes. each component numbers its own blocks from 0, and a
+		// batch returns the heads of its blocks and how many each component
+		// has.
+		int share = Math.max(1, bc.nodeCount / (threads * BATCHES_PER_THREAD));
+		List<Future<int[][]>> batches = new ArrayList<Future<int[][]>>();
+		for (int first = 0; first < bc.componentCount;) {
+			int last = first + 1;
+			while (last < bc.componentCount
+					&& starts[last + 1] - starts[first] <= share)
+				last++;
+			final int from = first, to = last;
+			batches.add(pool.submit(new Callable<int[][]>() {
+				public int[][] call() {
+					return bc.search(order, starts, from, to);
+				}
+			}));
+			first = last;
+		}
+
+		// move each component's blocks along past those of the components
+		// before it, so the numbering doesn't depend on the threads.
+		int[] base = new int[bc.componentCount];
+		try {
+			int c = 0;
+			for (Future<int[][]> batch : batches) {
+				int[][] result = batch.get();
+				int[] heads = result[0], blocks = result[1];
+				bc.ensureBlocks(bc.blockLimit + heads.length);
+				System.arraycopy(heads, 0, bc.head, bc.blockLimit, heads.length);
+				for (int i = 0; i < blocks.length; i++, c++) {
+					base[c] = bc.blockLimit;
+					bc.blockLimit += blocks[i];
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("biconnectivity search failed.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("biconnectivity search interrupted.", e);
+		}
+		bc.blockCount = bc.blockLimit;
+		Arrays.fill(bc.first, 0, bc.blockLimit, -1);
+
+		for (int v = 0; v < bc.nodeCount; v++)
+			if (bc.home[v] >= 0)
+				bc.home[v] += base[component[v]];
+		for (Segment s : graph.segmentArray) {
+			if (bc.block[s.index] >= 0) {
+				bc.block[s.index] += base[component[s.start.index]];
+				bc.link(s.index, bc.block[s.index]);
+			}
+		}
+		for (int b = 0; b < bc.blockLimit; b++) {
+			if (bc.size[b] == 1)
+				bc.bridgeCount++;
+			if (bc.head[b] >= 0)
+				bc.blocksAt[bc.head[b]]++;
+		}
+		for (int v = 0; v < bc.nodeCount; v++) {
+			if (bc.home[v] >= 0)
+				bc.blocksAt[v]++;
+			if (bc.blocksAt[v] > 1)
+				bc.articulationCount++;
+		}
+		return bc;
+	}
+
+	/**
+	 * Labels the connected components with a breadth first search from each
+	 * unlabelled node, lists the nodes of each component together in order,
+	 * and returns where each component's nodes start.
+	 */
+	private int[] findComponents(int[] component, int[] order) {
+		Arrays.fill(component, -1);
+		int[] starts = new int[16];
+		int tail = 0;
+		for (int root = 0; root < nodeCount; root++) {
+			if (component[root] >= 0)
+				continue;
+			if (componentCount + 1 >= starts.length)
+				starts = Arrays.copyOf(starts, starts.length * 2);
+			starts[componentCount] = tail;
+			int head = tail;
+			component[root] = componentCount;
+			order[tail++] = root;
+			while (head < tail) {
+				int u = order[head++];
+				for (int e = offset[u]; e < offset[u + 1]; e++) {
+					if (!closed[edge[e]] && component[other[e]] < 0) {
+						component[other[e]] = componentCount;
+						order[tail++] = other[e];
+					}
+				}
+			}
+			componentCount++;
+		}
+		starts[componentCount] = tail;
+		return starts;
+	}
+
+	/**
+	 * Runs Tarjan's algorithm over components first up to last, numbering
+	 * each component's blocks and homes from 0, and returns the heads of the
+	 * blocks and how many blocks each component has.
+	 */
+	private int[][] search(int[] order, int[] starts, int first, int last) {
+		int size = starts[last] - starts[first];
+		// the node stack, with each node's next edge to look at.
+		int[] stack = new int[size], next = new int[size];
+		// the segments seen but not yet put in a block.
+		int[] edges = new int[16];
+		int[] heads = new int[16], blocks = new int[last - first];
+		int edgeTop = 0, count = 0;
+
+		for (int c = first; c < last; c++) {
+			int root = order[starts[c]], top = 0, before = count;
+			stack[0] = root;
+			next[0] = offset[root];
+			parent[root] = -1;
+			depth[root] = low[root] = 1;
+
+			while (top >= 0) {
+				int u = stack[top];
+				if (next[top] < offset[u + 1]) {
+					int e = next[top]++;
+					int v = other[e], s = edge[e];
+					if (closed[s] || s == parent[u] || v == u)
+						continue;
+					if (depth[v] == 0) {
+						// a tree edge, going down.
+						edges = push(edges, edgeTop++, s);
+						top++;
+						stack[top] = v;
+						next[top] = offset[v];
+						parent[v] = s;
+						depth[v] = low[v] = depth[u] + 1;
+					} else if (depth[v] < depth[u]) {
+						// a back edge, to an ancestor.
+						edges = push(edges, edgeTop++, s);
+						low[u] = Math.min(low[u], depth[v]);
+					}
+					// otherwise v is a descendant that already saw this edge.
+					continue;
+				}
+
+				// u is finished, so its parent learns how far back it reaches.
+				top--;
+				if (top < 0)
+					break;
+				int p = stack[top], s = parent[u];
+				low[p] = Math.min(low[p], low[u]);
+				if (low[u] >= depth[p]) {
+					// nothing under u gets above p, so the segments since the
+					// one down to u form a block hanging from p. the root's
+					// first block is the root of the tree instead.
+					int popped;
+					do {
+						popped = edges[--edgeTop];
+						block[popped] = count - before;
+					} while (popped != s);
+					heads = push(heads, count, p);
+					if (p == root && home[root] < 0) {
+						heads[count] = -1;
+						home[root] = count - before;
+					}
+					count++;
+				}
+			}
+			// every other node hangs from the block of the segment down to it.
+			for (int i = starts[c] + 1; i < starts[c + 1]; i++)
+				home[order[i]] = block[parent[order[i]]];
+			blocks[c - first] = count - before;
+		}
+		return new int[][] { Arrays.copyOf(heads, count), blocks };
+	}
+
+	/**
+	 * Updates everything for a segment that has just been closed, searching
+	 * again only the block it was in.
+	 */
+	void remove(Segment segment) {
+		int s = segment.index, b = block[s];
+		closed[s] = true;
+		if (b < 0)
+			return;
+		block[s] = -1;
+		int a = segment.start.index, z = segment.end.index;
+
+		if (size[b] == 1) {
+			// a bridge: its ends come apart, and whichever hung from it hangs
+			// from one of its other blocks instead.
+			freeBlock(b);
+			bridgeCount--;
+			componentCount++;
+			adjust(a, -1);
+			adjust(z, -1);
+			if (home[a] == b)
+				rehome(a);
+			if (home[z] == b)
+				rehome(z);
+			return;
+		}
+
+		// gather the rest of the block to search again. a block of more than
+		// one segment stays connected without any one of them.
+		int count = 0, s0 = first[b], x = s0;
+		do {
+			if (x != s)
+				edges = push(edges, count++, x);
+			x = nextInBlock[x];
+		} while (x != s0);
+		int oldHead = head[b];
+		freeBlock(b);
+		for (int i = 0; i < count; i++) {
+			Segment seg = segments[edges[i]];
+			depth[seg.start.index] = depth[seg.end.index] = 0;
+			block[edges[i]] = PENDING;
+		}
+		// search from the head, if there is one, so the new blocks hang from
+		// the same place.
+		split(oldHead >= 0 ? oldHead : a, oldHead);
+	}
+
+	/**
+	 * Runs Tarjan's algorithm over the pending segments from start, making
+	 * the blocks they break up into.
+	 */
+	private void split(int start, int oldHead) {
+		int top = 0, edgeTop = 0, visited = 0;
+		stack[0] = start;
+		next[0] = offset[start];
+		parent[start] = -1;
+		depth[start] = low[start] = 1;
+		nodes[visited++] = start;
+		boolean rooted = oldHead >= 0;
+
+		while (top >= 0) {
+			int u = stack[top];
+			if (next[top] < offset[u + 1]) {
+				int e = next[top]++;
+				int v = other[e], s = edge[e];
+				if (block[s] != PENDING || s == parent[u] || v == u)
+					continue;
+				if (depth[v] == 0) {
+					edges = push(edges, edgeTop++, s);
+					top++;
+					stack = push(stack, top, v);
+					next = push(next, top, offset[v]);
+					parent[v] = s;
+					depth[v] = low[v] = depth[u] + 1;
+					nodes = push(nodes, visited++, v);
+				} else if (depth[v] < depth[u]) {
+					edges = push(edges, edgeTop++, s);
+					low[u] = Math.min(low[u], depth[v]);
+				}
+				continue;
+			}
+
+			top--;
+			if (top < 0)
+				break;
+			int p = stack[top], s = parent[u];
+			low[p] = Math.min(low[p], low[u]);
+			if (low[u] >= depth[p]) {
+				int b = newBlock(), popped;
+				do {
+					popped = edges[--edgeTop];
+					block[popped] = b;
+					link(popped, b);
+				} while (popped != s);
+				if (size[b] == 1)
+					bridgeCount++;
+				if (p == start && !rooted) {
+					// the old block was a root, so one of the new ones is.
+					home[start] = b;
+					rooted = true;
+				} else {
+					head[b] = p;
+					adjust(p, 1);
+				}
+			}
+		}
+
+		// each node now hangs from the block of the segment down to it,
+		// which takes the old block's place.
+		for (int i = 0; i < visited; i++) {
+			int v = nodes[i];
+			if (v != start)
+				home[v] = block[parent[v]];
+			else if (oldHead >= 0)
+				adjust(v, -1);
+		}
+	}
+
+	/**
+	 * Updates everything for a segment that has just been reopened, merging
+	 * the blocks on the path between its ends.
+	 */
+	void add(Segment segment) {
+		int s = segment.index, a = segment.start.index, b = segment.end.index;
+		closed[s] = false;
+		if (a == b || block[s] >= 0)
+			return;
+		if (home[a] < 0 || home[b] < 0) {
+			// a node with no other open segments joins by a bridge.
+			int x = newBlock();
+			link(s, x);
+			block[s] = x;
+			bridgeCount++;
+			componentCount--;
+			if (home[a] < 0 && home[b] < 0) {
+				home[a] = home[b] = x;
+			} else {
+				int inside = home[a] < 0 ? b : a;
+				head[x] = inside;
+				home[a + b - inside] = x;
+			}
+			adjust(a, 1);
+			adjust(b, 1);
+			return;
+		}
+
+		// climb from both ends towards the roots a step at a time, until one
+		// side gets somewhere the other has been.
+		epoch++;
+		int curA = a, curB = b, lengthA = 0, lengthB = 0;
+		boolean doneA = false, doneB = false;
+		mark(a, 0, 0);
+		mark(b, 1, 0);
+		int meetBlock = -1, meetNode = -1, side = 0;
+		while (!(doneA && doneB)) {
+			if (side == 0 ? !doneA : !doneB) {
+				int cur = side == 0 ? curA : curB;
+				int length = side == 0 ? lengthA : lengthB;
+				int x = home[cur];
+				if (blockMark[x] == tag(1 - side)) {
+					meetBlock = x;
+					break;
+				}
+				blockMark[x] = tag(side);
+				blockAt[x] = length;
+				path[side] = push(path[side], length++, x);
+				int h = head[x];
+				boolean done = h < 0;
+				if (!done && nodeMark[h] == tag(1 - side)) {
+					meetNode = h;
+				} else if (!done) {
+					mark(h, side, length);
+					cur = h;
+				}
+				if (side == 0) {
+					curA = cur;
+					lengthA = length;
+					doneA = done;
+				} else {
+					curB = cur;
+					lengthB = length;
+					doneB = done;
+				}
+				if (meetNode >= 0)
+					break;
+			}
+			side = 1 - side;
+		}
+
+		if (meetBlock < 0 && meetNode < 0) {
+			joinTrees(s, a, b, lengthA, lengthB);
+			return;
+		}
+
+		// the blocks to merge are the path up to where the two sides met
+		// from each, and the block they met in.
+		int count = 0, length = side == 0 ? lengthA : lengthB;
+		int otherLength = meetBlock >= 0 ? blockAt[meetBlock] : nodeAt[meetNode];
+		for (int i = 0; i < length; i++)
+			merged = push(merged, count++, path[side][i]);
+		for (int i = 0; i < otherLength; i++)
+			merged = push(merged, count++, path[1 - side][i]);
+		if (meetBlock >= 0)
+			merged = push(merged, count++, meetBlock);
+		int x = merge(count, meetBlock >= 0 ? head[meetBlock] : meetNode);
+		link(s, x);
+		block[s] = x;
+	}
+
+	/**
+	 * Merges the first count blocks in merged into the largest of them, which
+	 * hangs from top, and returns it. Every node where two of them meet is in
+	 * one block fewer.
+	 */
+	private int merge(int count, int top) {
+		int largest = merged[0], hanging = 0;
+		for (int i = 0; i < count; i++) {
+			int m = merged[i];
+			if (size[m] > size[largest])
+				largest = m;
+			if (size[m] == 1)
+				bridgeCount--;
+			if (head[m] < 0)
+				continue;
+			if (head[m] == top)
+				hanging++;
+			else
+				adjust(head[m], -1);
+		}
+		if (hanging > 1)
+			adjust(top, 1 - hanging);
+
+		for (int i = 0; i < count; i++) {
+			int m = merged[i];
+			if (m == largest)
+				continue;
+			int s0 = first[m], x = s0;
+			do {
+				Segment seg = segments[x];
+				block[x] = largest;
+				if (home[seg.start.index] == m)
+					home[seg.start.index] = largest;
+				if (home[seg.end.index] == m)
+					home[seg.end.index] = largest;
+				x = nextInBlock[x];
+			} while (x != s0);
+			// splice the two rings together.
+			int after = nextInBlock[first[largest]];
+			nextInBlock[first[largest]] = nextInBlock[s0];
+			nextInBlock[s0] = after;
+			size[largest] += size[m];
+			freeBlock(m);
+		}
+		head[largest] = top;
+		return largest;
+	}
+
+	/**
+	 * Joins two trees of the forest with a reopened segment between them,
+	 * which is a bridge. The tree whose end had the shorter climb to its root
+	 * is turned over to hang from the other end.
+	 */
+	private void joinTrees(int s, int a, int b, int lengthA, int lengthB) {
+		int side = lengthA <= lengthB ? 0 : 1;
+		int from = side == 0 ? a : b, to = side == 0 ? b : a;
+		int x = newBlock();
+		link(s, x);
+		block[s] = x;
+		head[x] = to;
+		int below = from;
+		for (int i = 0; i < (side == 0 ? lengthA : lengthB); i++) {
+			int y = path[side][i], above = head[y];
+			head[y] = below;
+			if (above >= 0)
+				home[above] = y;
+			below = above;
+		}
+		home[from] = x;
+		adjust(a, 1);
+		adjust(b, 1);
+		bridgeCount++;
+		componentCount--;
+	}
+
+	/**
+	 * Makes a node whose home has gone hang from another of its blocks,
+	 * which becomes the root of its tree, or from nothing if it has none.
+	 */
+	private void rehome(int w) {
+		home[w] = -1;
+		for (int e = offset[w]; e < offset[w + 1]; e++) {
+			int b = block[edge[e]];
+			if (b >= 0) {
+				head[b] = -1;
+				home[w] = b;
+				return;
+			}
+		}
+	}
+
+	private int tag(int side) {
+		return epoch * 2 + side;
+	}
+
+	private void mark(int node, int side, int at) {
+		nodeMark[node] = tag(side);
+		nodeAt[node] = at;
+	}
+
+	/**
+	 * Changes how many blocks a node is in, keeping count of the
+	 * articulation points.
+	 */
+	private void adjust(int node, int by) {
+		if (blocksAt[node] > 1)
+			articulationCount--;
+		blocksAt[node] += by;
+		if (blocksAt[node] > 1)
+			articulationCount++;
+	}
+
+	/**
+	 * Adds a segment to a block's ring.
+	 */
+	private void link(int s, int b) {
+		if (first[b] < 0) {
+			first[b] = s;
+			nextInBlock[s] = s;
+		} else {
+			nextInBlock[s] = nextInBlock[first[b]];
+			nextInBlock[first[b]] = s;
+		}
+		size[b]++;
+	}
+
+	private int newBlock() {
+		int b;
+		if (freeCount > 0) {
+			b = free[--freeCount];
+		} else {
+			ensureBlocks(blockLimit + 1);
+			b = blockLimit++;
+		}
+		head[b] = -1;
+		size[b] = 0;
+		first[b] = -1;
+		blockCount++;
+		return b;
+	}
+
+	private void freeBlock(int b) {
+		size[b] = 0;
+		first[b] = -1;
+		free = push(free, freeCount++, b);
+		blockCount--;
+	}
+
+	private void ensureBlocks(int limit) {
+		if (limit > head.length) {
+			int length = Math.max(limit, head.length * 2);
+			head = Arrays.copyOf(head, length);
+			size = Arrays.copyOf(size, length);
+			first = Arrays.copyOf(first, length);
+			blockMark = Arrays.copyOf(blockMark, length);
+			blockAt = Arrays.copyOf(blockAt, length);
+		}
+	}
+
+	/**
+	 * Sets array[i], first doubling the array if it's too short.
+	 */
+	private static int[] push(int[] array, int i, int value) {
+		if (i == array.length)
+			array = Arrays.copyOf(array, array.length * 2);
+		array[i] = value;
+		return array;
+	}
+
+	public boolean isArticulation(Node node) {
+		return blocksAt[node.index] > 1;
+	}
+
+	public boolean isBridge(Segment segment) {
+		int b = block[segment.index];
+		return b >= 0 && size[b] == 1;
+	}
+
+	/**
+	 * Returns the block a segment is in, or -1 for a closed segment or one
+	 * from a node to itself.
+	 */
+	public int block(Segment segment) {
+		return block[segment.index];
+	}
+
+	/**
+	 * Returns the dense indices of all the articulation points, in order.
+	 */
+	public int[] articulationPoints() {
+		int[] points = new int[articulationCount];
+		int n = 0;
+		for (int v = 0; v < nodeCount; v++)
+			if (blocksAt[v] > 1)
+				points[n++] = v;
+		return points;
+	}
+
+	public int articulationCount() {
+		return articulationCount;
+	}
+
+	public int bridgeCount() {
+		return bridgeCount;
+	}
+
+	public int blockCount() {
+		return blockCount;
+	}
+
+	public int componentCount() {
+		return componentCount;
+	}
+
+	public String toString() {
+		return String.format(
+				"%d articulation points, %d bridges, %d blocks, %d components",
+				articulationCount, bridgeCount, blockCount, componentCount);
+	}
+
+	/**
+	 * Returns a copy of the articulation points and bridges as they are now,
+	 * which later changes don't touch.
+	 */
+	WeakPoints weakPoints() {
+		long[] points = new long[(nodeCount + 63) >>> 6];
+		for (int v = 0; v < nodeCount; v++)
+			if (blocksAt[v] > 1)
+				points[v >>> 6] |= 1L << v;
+		long[] bridges = new long[(segments.length + 63) >>> 6];
+		for (int s = 0; s < segments.length; s++)
+			if (block[s] >= 0 && size[block[s]] == 1)
+				bridges[s >>> 6] |= 1L << s;
+		return new WeakPoints(points, bridges, toString());
+	}
+
+	/**
+	 * The articulation points and bridges at one moment, as bit sets by dense
+	 * index. It's never changed, so any thread can read it while segments are
+	 * being closed and reopened.
+	 */
+	public static class WeakPoints {
+		private final long[] points, bridges;
+		private final String summary;
+
+		private WeakPoints(long[] points, long[] bridges, String summary) {
+			this.points = points;
+			this.bridges = bridges;
+			this.summary = summary;
+		}
+
+		public boolean isArticulation(Node node) {
+			return (points[node.index >>> 6] & 1L << node.index) != 0;
+		}
+
+		public boolean isBridge(Segment segment) {
+			return (bridges[segment.index >>> 6] & 1L << segment.index) != 0;
+		}
+
+		public String toString() {
+			return summary;
+		}
+	}
+}
+
+// code for COMP261 assignments
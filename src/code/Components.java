@@ -0,0 +1,271 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * Components labels every node with its connected component, ignoring
+ * one-way roads, and its strongly connected component, following them, so
+ * that most pairs of nodes with no route between them can be turned away
+ * without searching. The segments that were closed when they were worked out
+ * are left out, and a search should leave out the same ones, closed(), so
+ * that a closure made in the meantime can't make the two disagree.
+ *
+ * The strong components are numbered by Tarjan's algorithm, which finishes a
+ * component only after every component it leads to, so an edge between two
+ * components always goes from a higher number to a lower one. Working up from
+ * component 0, each component's set of reachable components is then its own
+ * and those of the components it leads to, kept as a row of bits, so whether
+ * one node can reach another is a single bit. On a graph with too many strong
+ * components for the rows to fit in MAX_REACH_WORDS, only the numbering is
+ * used: a node can then only reach nodes in its own connected component whose
+ * strong component is numbered no higher than its own, and none at all
+ * outside its strong component if that has no way out.
+ */
+public class Components {
+
+	// the most longs the reachability rows can take up, 8MB, which is room
+	// for rows for about 8000 strong components.
+	static final int MAX_REACH_WORDS = 1 << 20;
+
+	private final int[] weak, strong;
+	private final int weakCount, strongCount;
+	// the number of nodes in each connected component.
+	private final int[] weakSize;
+	// whether each strong component has no edges out of it, or into it.
+	private final boolean[] sink, source;
+	// which strong components each one can reach, a row of words longs for
+	// each, or null if there are too many components.
+	private final long[] reach;
+	private final int words;
+	// the closed segments left out, as a bit set, or null for none.
+	private final long[] closed;
+
+	private Components(int[] weak, int weakCount, int[] strong,
+			int strongCount, int[] weakSize, boolean[] sink, boolean[] source,
+			long[] reach, long[] closed) {
+		this.weak = weak;
+		this.weakCount = weakCount;
+		this.strong = strong;
+		this.strongCount = strongCount;
+		this.weakSize = weakSize;
+		this.sink = sink;
+		this.source = source;
+		this.reach = reach;
+		this.words = (strongCount + 63) >>> 6;
+		this.closed = closed;
+	}
+
+	/**
+	 * Labels the components of the graph's edges, leaving out the closed
+	 * segments, which may be null.
+	 */
+	public static Components build(Graph graph, long[] closed) {
+		Adjacency out = graph.forward, in = graph.backward;
+		int n = graph.nodeArray.length;
+
+		// connected components, by breadth first search both ways.
+		int[] weak = new int[n];
+		Arrays.fill(weak, -1);
+		int[] queue = new int[n], weakSize = new int[16];
+		int weakCount = 0;
+		Adjacency[] both = { out, in };
+		for (int root = 0; root < n; root++) {
+			if (weak[root] >= 0)
+				continue;
+			int head = 0, tail = 0;
+			weak[root] = weakCount;
+			queue[tail++] = root;
+			while (head < tail) {
+				int u = queue[head++];
+				for (Adjacency adj : both) {
+					for (int e = adj.start(u); e < adj.end(u); e++) {
+						int v = adj.target[e];
+						if (weak[v] < 0 && isOpen(adj, e, closed)) {
+							weak[v] = weakCount;
+							queue[tail++] = v;
+						}
+					}
+				}
+			}
+			if (weakCount == weakSize.length)
+				weakSize = Arrays.copyOf(weakSize, weakCount * 2);
+			weakSize[weakCount++] = tail;
+		}
+
+		// strongly connected components, by Tarjan's algorithm with an
+		// explicit stack. index counts from 1, so that 0 is unvisited.
+		int[] strong = new int[n], index = new int[n], low = new int[n];
+		int[] stack = new int[n], call = new int[n], next = new int[n];
+		boolean[] onStack = new boolean[n];
+		int counter = 0, strongCount = 0, top = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] != 0)
+				continue;
+			int depth = 0;
+			call[0] = root;
+			next[0] = out.start(root);
+			index[root] = low[root] = ++counter;
+			stack[top++] = root;
+			onStack[root] = true;
+			while (depth >= 0) {
+				int u = call[depth];
+				if (next[depth] < out.end(u)) {
+					int e = next[depth]++;
+					int v = out.target[e];
+					if (!isOpen(out, e, closed))
+						continue;
+					if (index[v] == 0) {
+						depth++;
+						call[depth] = v;
+						next[depth] = out.start(v);
+						index[v] = low[v] = ++counter;
+						stack[top++] = v;
+						onStack[v] = true;
+					} else if (onStack[v]) {
+						low[u] = Math.min(low[u], index[v]);
+					}
+					continue;
+				}
+
+				// u is finished: if nothing under it reaches above it, it and
+				// everything above it on the stack are a component.
+				if (low[u] == index[u]) {
+					int w;
+					do {
+						w = stack[--top];
+						onStack[w] = false;
+						strong[w] = strongCount;
+					} while (w != u);
+					strongCount++;
+				}
+				depth--;
+				if (depth >= 0)
+					low[call[depth]] = Math.min(low[call[depth]], low[u]);
+			}
+		}
+
+		// the edges between strong components, grouped by the component
+		// they leave.
+		boolean[] sink = new boolean[strongCount];
+		boolean[] source = new boolean[strongCount];
+		Arrays.fill(sink, true);
+		Arrays.fill(source, true);
+		int[] first = new int[strongCount + 1];
+		for (int u = 0; u < n; u++) {
+			for (int e = out.start(u); e < out.end(u); e++) {
+				int v = out.target[e];
+				if (strong[u] != strong[v] && isOpen(out, e, closed)) {
+					sink[strong[u]] = false;
+					source[strong[v]] = false;
+					first[strong[u] + 1]++;
+				}
+			}
+		}
+		for (int c = 0; c < strongCount; c++)
+			first[c + 1] += first[c];
+		int[] leadsTo = new int[first[strongCount]];
+		int[] fill = Arrays.copyOf(first, strongCount);
+		for (int u = 0; u < n; u++) {
+			for (int e = out.start(u); e < out.end(u); e++) {
+				int v = out.target[e];
+				if (strong[u] != strong[v] && isOpen(out, e, closed))
+					leadsTo[fill[strong[u]]++] = strong[v];
+			}
+		}
+
+		// every component leads only to lower numbered ones, whose rows are
+		// already done by the time it's reached.
+		int words = (strongCount + 63) >>> 6;
+		long[] reach = null;
+		if ((long) strongCount * words <= MAX_REACH_WORDS) {
+			reach = new long[strongCount * words];
+			for (int c = 0; c < strongCount; c++) {
+				int row = c * words;
+				reach[row + (c >>> 6)] |= 1L << c;
+				for (int i = first[c]; i < first[c + 1]; i++) {
+					int other = leadsTo[i] * words;
+					for (int k = 0; k < words; k++)
+						reach[row + k] |= reach[other + k];
+				}
+			}
+		}
+		return new Components(weak, weakCount, strong, strongCount,
+				Arrays.copyOf(weakSize, weakCount), sink, source, reach,
+				closed);
+	}
+
+	private static boolean isOpen(Adjacency adj, int e, long[] closed) {
+		return !Graph.isClosed(closed, adj.segment[e]);
+	}
+
+	/**
+	 * Returns the closed segments the components leave out, as a bit set by
+	 * dense segment index, or null if there were none.
+	 */
+	long[] closed() {
+		return closed;
+	}
+
+	/**
+	 * Returns false if there's certainly no route from node s to node t, by
+	 * dense index, and true if there may be one. With the reachability rows
+	 * it's exact; without them it can be true for a pair with no route in
+	 * the same connected component but different strong components, which
+	 * are ordered the right way round.
+	 */
+	public boolean mayReach(int s, int t) {
+		if (weak[s] != weak[t])
+			return false;
+		int from = strong[s], to = strong[t];
+		if (from == to)
+			return true;
+		if (reach != null)
+			return (reach[from * words + (to >>> 6)] & 1L << to) != 0;
+		return from > to && !sink[from] && !source[to];
+	}
+
+	/**
+	 * Returns true if mayReach is exact, which it is unless there were too
+	 * many strong components to work out which reach which.
+	 */
+	public boolean isExact() {
+		return reach != null;
+	}
+
+	public boolean mayReach(Node start, Node goal) {
+		return mayReach(start.index, goal.index);
+	}
+
+	/**
+	 * Returns the connected component of a node, ignoring one-way roads.
+	 */
+	public int weak(Node node) {
+		return weak[node.index];
+	}
+
+	/**
+	 * Returns the strongly connected component of a node.
+	 */
+	public int strong(Node node) {
+		return strong[node.index];
+	}
+
+	public int weakSize(int component) {
+		return weakSize[component];
+	}
+
+	public int weakCount() {
+		return weakCount;
+	}
+
+	public int strongCount() {
+		return strongCount;
+	}
+
+	public String toString() {
+		return String.format("%d connected components, %d strongly connected",
+				weakCount, strongCount);
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,764 @@
+package code;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * A ContractionHierarchy answers shortest path queries on the road graph in
+ * microseconds, after some preprocessing.
+ *
+ * The preprocessing contracts the nodes one at a time, least important first.
+ * Contracting a node v removes it from the graph, and for each pair of
+ * neighbours u -> v -> x whose only shortest path goes through v, adds a
+ * shortcut arc u -> x of the same length. A witness search from u tells us
+ * whether there's another path that's no longer. Nodes are ordered by their
+ * edge difference (the shortcuts contracting them would add, less the arcs it
+ * would remove) plus how many of their neighbours have already gone, which
+ * keeps the hierarchy flat and the shortcuts few.
+ *
+ * A query then only has to search upwards (towards nodes contracted later)
+ * from both ends, which visits a few hundred nodes at most. Each shortcut
+ * remembers the two arcs it replaced, so a path unpacks back into the
+ * original Segments.
+ *
+ * Preprocessing contracts an independent set of nodes each round (nodes whose
+ * priority is lower than all their neighbours'), working out their shortcuts
+ * in parallel. The result can be saved next to the data files, like the graph
+ * Snapshot.
+ */
+public class ContractionHierarchy {
+
+	public static final String FILENAME = "graph.ch";
+
+	private static final int MAGIC = 0x43484D50; // "CHMP"
+	// bump this whenever the file layout or the node numbering changes. 2
+	// numbers nodes in ID order.
+	private static final int VERSION = 2;
+
+	// how many nodes a witness search settles before giving up; giving up
+	// early only costs an unnecessary shortcut.
+	private static final int WITNESS_SETTLE_LIMIT = 500;
+
+	private final Graph graph;
+	private final int nodeCount;
+
+	// every arc ever made, original or shortcut. An original arc has the
+	// segment it came from, and a shortcut has -1 there and the two arcs it
+	// replaced (first from its start to the contracted node, second from the
+	// contracted node to its end).
+	private final int arcCount;
+	private final int[] arcFrom, arcTo, arcSegment, arcFirst, arcSecond;
+	private final double[] arcWeight;
+	// arcs that were replaced by a shorter one between the same nodes, which
+	// queries don't use.
+	private final boolean[] arcDead;
+	// the position of each node in the contraction order.
+	private final int[] rank;
+
+	// compressed-sparse-row search graphs. up holds the arcs u -> v with
+	// rank[v] > rank[u] under u, and down holds the arcs u -> v with rank[u]
+	// > rank[v] under v, with u as the target, for searching backwards.
+	private int[] upOffset, upTarget, upArc;
+	private double[] upWeight;
+	private int[] downOffset, downTarget, downArc;
+	private double[] downWeight;
+
+	// each thread's search state, for the forward and backward searches.
+	private final ThreadLocal<SearchState[]> states = new ThreadLocal<SearchState[]>() {
+		protected SearchState[] initialValue() {
+			return new SearchState[] { new SearchState(nodeCount),
+					new SearchState(nodeCount) };
+		}
+	};
+
+	private ContractionHierarchy(Graph graph, int arcCount, int[] arcFrom,
+			int[] arcTo, double[] arcWeight, int[] arcSegment, int[] arcFirst,
+			int[] arcSecond, boolean[] arcDead, int[] rank) {
+		this.graph = graph;
+		this.nodeCount = rank.length;
+		this.arcCount = arcCount;
+		this.arcFrom = arcFrom;
+		this.arcTo = arcTo;
+		this.arcWeight = arcWeight;
+		this.arcSegment = arcSegment;
+		this.arcFirst = arcFirst;
+		this.arcSecond = arcSecond;
+		this.arcDead = arcDead;
+		this.rank = rank;
+		index();
+	}
+
+	/**
+	 * Returns where the hierarchy for a set of data files lives.
+	 */
+	public static File fileFor(File nodes) {
+		return new File(nodes.getAbsoluteFile().getParentFile(), FILENAME);
+	}
+
+	/**
+	 * Builds the up and down search graphs from the live arcs.
+	 */
+	private void index() {
+		int[] upCount = new int[nodeCount + 1], downCount = new int[nodeCount + 1];
+		for (int a = 0; a < arcCount; a++) {
+			if (arcDead[a])
+				continue;
+			if (rank[arcTo[a]] > rank[arcFrom[a]])
+				upCount[arcFrom[a] + 1]++;
+			else
+				downCount[arcTo[a] + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			upCount[i + 1] += upCount[i];
+			downCount[i + 1] += downCount[i];
+		}
+		upOffset = upCount.clone();
+		downOffset = downCount.clone();
+		upTarget = new int[upCount[nodeCount]];
+		upArc = new int[upTarget.length];
+		upWeight = new double[upTarget.length];
+		downTarget = new int[downCount[nodeCount]];
+		downArc = new int[downTarget.length];
+		downWeight = new double[downTarget.length];
+
+		for (int a = 0; a < arcCount; a++) {
+			if (arcDead[a])
+				continue;
+			if (rank[arcTo[a]] > rank[arcFrom[a]]) {
+				int at = upCount[arcFrom[a]]++;
+				upTarget[at] = arcTo[a];
+				upArc[at] = a;
+				upWeight[at] = arcWeight[a];
+			} else {
+				int at = downCount[arcTo[a]]++;
+				downTarget[at] = arcFrom[a];
+				downArc[at] = a;
+				downWeight[at] = arcWeight[a];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of shortcut arcs in the hierarchy.
+	 */
+	public int shortcutCount() {
+		int count = 0;
+		for (int a = 0; a < arcCount; a++)
+			if (arcSegment[a] < 0)
+				count++;
+		return count;
+	}
+
+	// ------------------------------------------
+	// queries
+	// ------------------------------------------
+
+	/**
+	 * Finds the shortest path from start to goal, by searching upwards from
+	 * both ends. Nodes that can be reached more cheaply from above than the
+	 * search has found so far can't be on a shortest path, so they're stalled
+	 * rather than expanded.
+	 */
+	public Router.Route route(Node start, Node goal) {
+		int s = start.index, t = goal.index;
+		SearchState[] pair = states.get();
+		SearchState forward = pair[0], backward = pair[1];
+		forward.reset();
+		backward.reset();
+		Router.Route route = new Router.Route();
+
+		forward.set(s, 0, -1);
+		forward.fringe.push(s, 0);
+		backward.set(t, 0, -1);
+		backward.fringe.push(t, 0);
+
+		// the best path found so far is best long, and goes up to meet.
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+
+		while (true) {
+			double topF = forward.fringe.isEmpty() ? Double.POSITIVE_INFINITY
+					: forward.fringe.peekKey();
+			double topB = backward.fringe.isEmpty() ? Double.POSITIVE_INFINITY
+					: backward.fringe.peekKey();
+			if (Math.min(topF, topB) >= best)
+				break;
+
+			boolean isForward = topF <= topB;
+			SearchState own = isForward ? forward : backward;
+			SearchState other = isForward ? backward : forward;
+			int u = own.fringe.pop();
+			double du = own.dist(u);
+			route.expanded++;
+
+			if (du + other.dist(u) < best) {
+				best = du + other.dist(u);
+				meet = u;
+			}
+			if (isStalled(u, du, own, isForward))
+				continue;
+
+			int[] offset = isForward ? upOffset : downOffset;
+			int[] target = isForward ? upTarget : downTarget;
+			int[] arc = isForward ? upArc : downArc;
+			double[] weight = isForward ? upWeight : downWeight;
+			for (int e = offset[u]; e < offset[u + 1]; e++) {
+				int v = target[e];
+				double cost = du + weight[e];
+				if (cost < own.dist(v)) {
+					own.set(v, cost, arc[e]);
+					own.fringe.push(v, cost);
+				}
+			}
+		}
+
+		if (meet >= 0) {
+			route.length = best;
+			// the arcs up from the start, then down to the goal.
+			List<Integer> arcs = new ArrayList<Integer>();
+			for (int v = meet; v != s; v = arcFrom[forward.parent(v)])
+				arcs.add(forward.parent(v));
+			Collections.reverse(arcs);
+			for (int v = meet; v != t; v = arcTo[backward.parent(v)])
+				arcs.add(backward.parent(v));
+			for (int a : arcs)
+				unpack(a, route.segments);
+		}
+		return route;
+	}
+
+	/**
+	 * Returns true if u can be reached more cheaply than du through a node
+	 * above it, which means the search has u's distance wrong and needn't go
+	 * on from it.
+	 */
+	private boolean isStalled(int u, double du, SearchState own,
+			boolean isForward) {
+		// going forward, the arcs into u from above are the down arcs, and
+		// going backward, the arcs out of u upwards are the up arcs.
+		int[] offset = isForward ? downOffset : upOffset;
+		int[] target = isForward ? downTarget : upTarget;
+		double[] weight = isForward ? downWeight : upWeight;
+		for (int e = offset[u]; e < offset[u + 1]; e++)
+			if (own.dist(target[e]) + weight[e] < du)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Adds the segments an arc stands for to a list, in order.
+	 */
+	private void unpack(int arc, List<Segment> segments) {
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = arc;
+		while (top > 0) {
+			int a = stack[--top];
+			if (arcSegment[a] >= 0) {
+				segments.add(graph.segmentArray[arcSegment[a]]);
+			} else {
+				if (top + 2 > stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				// second goes on first so that first comes off first.
+				stack[top++] = arcSecond[a];
+				stack[top++] = arcFirst[a];
+			}
+		}
+	}
+
+	// ------------------------------------------
+	// saving and loading
+	// ------------------------------------------
+
+	/**
+	 * Writes the hierarchy to a file, tagged with the sources it was built
+	 * from.
+	 */
+	public void save(File file, File[] sources) throws IOException {
+		Snapshot.write(file, MAGIC, VERSION, sources, new Snapshot.Body() {
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(nodeCount);
+				for (int r : rank)
+					out.writeInt(r);
+				out.writeInt(arcCount);
+				for (int a = 0; a < arcCount; a++) {
+					out.writeInt(arcFrom[a]);
+					out.writeInt(arcTo[a]);
+					out.writeDouble(arcWeight[a]);
+					out.writeInt(arcSegment[a]);
+					out.writeInt(arcFirst[a]);
+					out.writeInt(arcSecond[a]);
+					out.writeBoolean(arcDead[a]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads a hierarchy saved for the given graph, or returns null if the file
+	 * is missing, unreadable, or out of date with respect to the sources.
+	 */
+	public static ContractionHierarchy load(File file, File[] sources,
+			Graph graph) {
+		try {
+			ByteBuffer buf = Snapshot.map(file, MAGIC, VERSION, sources);
+			if (buf == null || buf.getInt() != graph.nodeArray.length)
+				return null;
+
+			int[] rank = new int[graph.nodeArray.length];
+			for (int i = 0; i < rank.length; i++)
+				rank[i] = buf.getInt();
+			int count = buf.getInt();
+			int[] from = new int[count], to = new int[count];
+			int[] segment = new int[count], first = new int[count], second = new int[count];
+			double[] weight = new double[count];
+			boolean[] dead = new boolean[count];
+			for (int a = 0; a < count; a++) {
+				from[a] = buf.getInt();
+				to[a] = buf.getInt();
+				weight[a] = buf.getDouble();
+				segment[a] = buf.getInt();
+				first[a] = buf.getInt();
+				second[a] = buf.getInt();
+				dead[a] = buf.get() != 0;
+				if (segment[a] >= graph.segmentArray.length)
+					return null;
+			}
+			return new ContractionHierarchy(graph, count, from, to, weight,
+					segment, first, second, dead, rank);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("ignoring unreadable hierarchy " + file + ": "
+					+ e);
+			return null;
+		}
+	}
+
+	// ------------------------------------------
+	// preprocessing
+	// ------------------------------------------
+
+	/**
+	 * Builds the hierarchy for a graph, using the pool to contract nodes in
+	 * parallel.
+	 */
+	public static ContractionHierarchy build(Graph graph, ExecutorService pool) {
+		Builder builder = new Builder(graph);
+		builder.contractAll(pool);
+		return new ContractionHierarchy(graph, builder.count, builder.from,
+				builder.to, builder.weight, builder.segment, builder.first,
+				builder.second, builder.dead, builder.rank);
+	}
+
+	/**
+	 * The state of the graph while it's being contracted.
+	 */
+	private static class Builder {
+		final int n;
+
+		// the arcs, as in ContractionHierarchy, but growing.
+		int count;
+		int[] from, to, segment, first, second;
+		double[] weight;
+		boolean[] dead;
+
+		// the live arcs leaving and entering each node.
+		final int[][] out, in;
+		final int[] outSize, inSize;
+
+		final boolean[] contracted;
+		final int[] rank;
+		// the round a node was picked for contraction in (0 for not yet).
+		final int[] selected;
+		final int[] priority;
+		// how many of a node's neighbours have been contracted.
+		final int[] deleted;
+		// the shortcuts to add for each node picked this round, as groups of
+		// four ints: start, end, first arc, second arc.
+		final int[][] pending;
+
+		final ThreadLocal<Worker> workers;
+
+		Builder(Graph graph) {
+			this.n = graph.nodeArray.length;
+			this.from = new int[1024];
+			this.to = new int[1024];
+			this.segment = new int[1024];
+			this.first = new int[1024];
+			this.second = new int[1024];
+			this.weight = new double[1024];
+			this.dead = new boolean[1024];
+			this.out = new int[n][];
+			this.in = new int[n][];
+			this.outSize = new int[n];
+			this.inSize = new int[n];
+			this.contracted = new boolean[n];
+			this.rank = new int[n];
+			this.selected = new int[n];
+			this.priority = new int[n];
+			this.deleted = new int[n];
+			this.pending = new int[n][];
+			this.workers = new ThreadLocal<Worker>() {
+				protected Worker initialValue() {
+					return new Worker(n);
+				}
+			};
+
+			// start with the original edges, keeping only the shortest of any
+			// parallel ones. the lengths come from the segments, so that
+			// closed segments are in the hierarchy like any other.
+			Adjacency forward = graph.forward;
+			for (int u = 0; u < n; u++) {
+				for (int e = forward.start(u); e < forward.end(u); e++) {
+					int v = forward.target[e];
+					if (v != u)
+						addArc(u, v, graph.segmentArray[forward.segment[e]].length,
+								forward.segment[e], -1, -1);
+				}
+			}
+		}
+
+		/**
+		 * Adds an arc, unless there's already one between the same nodes that
+		 * is no longer; a longer one is replaced.
+		 */
+		void addArc(int u, int v, double w, int seg, int a1, int a2) {
+			for (int i = 0; i < outSize[u]; i++) {
+				int a = out[u][i];
+				if (to[a] == v) {
+					if (weight[a] <= w)
+						return;
+					dead[a] = true;
+					remove(out, outSize, u, a);
+					remove(in, inSize, v, a);
+					break;
+				}
+			}
+
+			if (count == from.length) {
+				int size = count * 2;
+				from = Arrays.copyOf(from, size);
+				to = Arrays.copyOf(to, size);
+				segment = Arrays.copyOf(segment, size);
+				first = Arrays.copyOf(first, size);
+				second = Arrays.copyOf(second, size);
+				weight = Arrays.copyOf(weight, size);
+				dead = Arrays.copyOf(dead, size);
+			}
+			int a = count++;
+			from[a] = u;
+			to[a] = v;
+			weight[a] = w;
+			segment[a] = seg;
+			first[a] = a1;
+			second[a] = a2;
+			append(out, outSize, u, a);
+			append(in, inSize, v, a);
+		}
+
+		private static void append(int[][] lists, int[] sizes, int node, int arc) {
+			if (lists[node] == null)
+				lists[node] = new int[4];
+			else if (sizes[node] == lists[node].length)
+				lists[node] = Arrays.copyOf(lists[node], sizes[node] * 2);
+			lists[node][sizes[node]++] = arc;
+		}
+
+		private static void remove(int[][] lists, int[] sizes, int node, int arc) {
+			for (int i = 0; i < sizes[node]; i++) {
+				if (lists[node][i] == arc) {
+					lists[node][i] = lists[node][--sizes[node]];
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Drops the arcs to and from contracted nodes from a node's lists.
+		 */
+		private void compact(int node) {
+			int k = 0;
+			for (int i = 0; i < outSize[node]; i++)
+				if (!contracted[to[out[node][i]]])
+					out[node][k++] = out[node][i];
+			outSize[node] = k;
+			k = 0;
+			for (int i = 0; i < inSize[node]; i++)
+				if (!contracted[from[in[node][i]]])
+					in[node][k++] = in[node][i];
+			inSize[node] = k;
+		}
+
+		void contractAll(ExecutorService pool) {
+			parallelFor(pool, n, new IntConsumer() {
+				public void accept(int v) {
+					priority[v] = priority(v);
+				}
+			});
+
+			int remaining = n, nextRank = 0;
+			for (int round = 1; remaining > 0; round++) {
+				final int r = round;
+
+				// pick the nodes that come before all their neighbours.
+				parallelFor(pool, n, new IntConsumer() {
+					public void accept(int v) {
+						if (!contracted[v] && isLocalMinimum(v))
+							selected[v] = r;
+					}
+				});
+				final int[] picked = new int[remaining];
+				int size = 0;
+				for (int v = 0; v < n; v++)
+					if (selected[v] == r)
+						picked[size++] = v;
+
+				// work out their shortcuts in parallel; they share no
+				// neighbours, so the graph around each is unaffected by the
+				// others.
+				parallelFor(pool, size, new IntConsumer() {
+					public void accept(int i) {
+						pending[picked[i]] = workers.get().shortcuts(
+								Builder.this, picked[i], r);
+					}
+				});
+
+				// then contract them, one thread only.
+				for (int i = 0; i < size; i++) {
+					int v = picked[i];
+					contracted[v] = true;
+					rank[v] = nextRank++;
+				}
+				for (int i = 0; i < size; i++) {
+					int v = picked[i];
+					int[] list = pending[v];
+					for (int k = 0; k < list.length; k += 4)
+						addArc(list[k], list[k + 1], weight[list[k + 2]]
+								+ weight[list[k + 3]], -1, list[k + 2],
+								list[k + 3]);
+					pending[v] = null;
+				}
+
+				// and bring their neighbours' priorities up to date.
+				final int[] touched = new int[remaining];
+				int touchedSize = 0;
+				for (int i = 0; i < size; i++) {
+					int v = picked[i];
+					for (int k = 0; k < outSize[v]; k++)
+						touchedSize = touch(to[out[v][k]], r, touched, touchedSize);
+					for (int k = 0; k < inSize[v]; k++)
+						touchedSize = touch(from[in[v][k]], r, touched, touchedSize);
+				}
+				for (int i = 0; i < touchedSize; i++)
+					compact(touched[i]);
+				parallelFor(pool, touchedSize, new IntConsumer() {
+					public void accept(int i) {
+						priority[touched[i]] = priority(touched[i]);
+					}
+				});
+
+				remaining -= size;
+			}
+		}
+
+		/**
+		 * Counts a contracted neighbour of a live node, and adds the node to
+		 * the list of those touched this round if it isn't already.
+		 */
+		private int touch(int node, int round, int[] touched, int size) {
+			if (contracted[node])
+				return size;
+			deleted[node]++;
+			// selected is free to use as a mark for live nodes.
+			if (selected[node] != -round) {
+				selected[node] = -round;
+				touched[size++] = node;
+			}
+			return size;
+		}
+
+		private int priority(int v) {
+			Worker worker = workers.get();
+			// no round: selected holds rounds and marks, and never this, so
+			// the witness searches can go through any live node.
+			int shortcuts = worker.shortcuts(this, v, Integer.MIN_VALUE).length / 4;
+			return shortcuts - outSize[v] - inSize[v] + deleted[v];
+		}
+
+		/**
+		 * Returns true if v's priority is lower than all its live
+		 * neighbours', breaking ties by index.
+		 */
+		private boolean isLocalMinimum(int v) {
+			for (int i = 0; i < outSize[v]; i++)
+				if (!before(v, to[out[v][i]]))
+					return false;
+			for (int i = 0; i < inSize[v]; i++)
+				if (!before(v, from[in[v][i]]))
+					return false;
+			return true;
+		}
+
+		private boolean before(int v, int w) {
+			if (contracted[w] || w == v)
+				return true;
+			return priority[v] < priority[w]
+					|| (priority[v] == priority[w] && v < w);
+		}
+	}
+
+	/**
+	 * One thread's space for witness searches.
+	 */
+	private static class Worker {
+		final SearchState search;
+		int[] ins = new int[16], outs = new int[16];
+		int[] found = new int[64];
+
+		Worker(int nodeCount) {
+			this.search = new SearchState(nodeCount);
+		}
+
+		/**
+		 * Returns the shortcuts contracting v needs, as groups of four ints:
+		 * start, end, first arc, second arc. Witness searches don't go through
+		 * the nodes picked in the given round.
+		 */
+		int[] shortcuts(Builder b, int v, int round) {
+			// the cheapest arc from each live in-neighbour and to each live
+			// out-neighbour.
+			int inCount = cheapest(b, b.in[v], b.inSize[v], b.from, true);
+			int outCount = cheapest(b, b.out[v], b.outSize[v], b.to, false);
+			int size = 0;
+
+			for (int i = 0; i < inCount; i++) {
+				int inArc = ins[i], u = b.from[inArc];
+				double maxCost = 0;
+				for (int j = 0; j < outCount; j++)
+					if (b.to[outs[j]] != u)
+						maxCost = Math.max(maxCost, b.weight[inArc]
+								+ b.weight[outs[j]]);
+				if (maxCost == 0)
+					continue;
+
+				witnessSearch(b, u, v, round, maxCost);
+				for (int j = 0; j < outCount; j++) {
+					int outArc = outs[j], x = b.to[outArc];
+					if (x == u)
+						continue;
+					double via = b.weight[inArc] + b.weight[outArc];
+					if (search.dist(x) > via) {
+						if (size + 4 > found.length)
+							found = Arrays.copyOf(found, found.length * 2);
+						found[size++] = u;
+						found[size++] = x;
+						found[size++] = inArc;
+						found[size++] = outArc;
+					}
+				}
+			}
+			return Arrays.copyOf(found, size);
+		}
+
+		/**
+		 * Fills ins (or outs) with the cheapest of the live arcs in a list to
+		 * each distinct neighbour, returning how many there are.
+		 */
+		private int cheapest(Builder b, int[] arcs, int size, int[] ends,
+				boolean isIn) {
+			int[] into = isIn ? ins : outs;
+			if (size > into.length) {
+				into = new int[Math.max(size, into.length * 2)];
+				if (isIn)
+					ins = into;
+				else
+					outs = into;
+			}
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				int a = arcs[i], w = ends[a];
+				if (b.contracted[w])
+					continue;
+				int k = 0;
+				while (k < count && ends[into[k]] != w)
+					k++;
+				if (k == count)
+					into[count++] = a;
+				else if (b.weight[a] < b.weight[into[k]])
+					into[k] = a;
+			}
+			return count;
+		}
+
+		/**
+		 * Dijkstra from u, not going through v or any node picked this round,
+		 * as far as maxCost or the settle limit.
+		 */
+		private void witnessSearch(Builder b, int u, int v, int round,
+				double maxCost) {
+			search.reset();
+			search.set(u, 0, -1);
+			search.fringe.push(u, 0);
+			int settled = 0;
+			while (!search.fringe.isEmpty()) {
+				if (search.fringe.peekKey() > maxCost
+						|| ++settled > WITNESS_SETTLE_LIMIT)
+					break;
+				int y = search.fringe.pop();
+				double dy = search.dist(y);
+				for (int i = 0; i < b.outSize[y]; i++) {
+					int a = b.out[y][i], z = b.to[a];
+					if (z == v || b.contracted[z] || b.selected[z] == round)
+						continue;
+					double cost = dy + b.weight[a];
+					if (cost < search.dist(z)) {
+						search.set(z, cost, a);
+						search.fringe.push(z, cost);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs body for every int from 0 to n - 1, in chunks on the pool, and
+	 * waits for them all.
+	 */
+	private static void parallelFor(ExecutorService pool, int n,
+			final IntConsumer body) {
+		int chunks = Math.min(n, 4 * Runtime.getRuntime().availableProcessors());
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int c = 0; c < chunks; c++) {
+			final int lo = (int) ((long) n * c / chunks);
+			final int hi = (int) ((long) n * (c + 1) / chunks);
+			futures.add(pool.submit(new Callable<Void>() {
+				public Void call() {
+					for (int i = lo; i < hi; i++)
+						body.accept(i);
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Void> f : futures)
+				f.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("contraction failed.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("contraction interrupted.", e);
+		}
+	}
+}
+
+// code for COMP261 assignments
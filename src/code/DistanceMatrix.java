@@ -0,0 +1,155 @@
+package code;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A DistanceMatrix works out the shortest path distance from each of a set of
+ * sources to each of a set of targets, for origin-destination planning. Each
+ * source gets one Dijkstra search, which stops as soon as every target it
+ * might reach (going by the graph's component labels) has been settled,
+ * rather than a search per pair. Every search leaves out the segments that
+ * were closed when the labels were worked out, so the whole matrix is for
+ * one set of closures. The sources are split up over
+ * a ForkJoinPool, each thread searching with its own SearchState, and the
+ * results go into one dense row-major array.
+ *
+ * Like the node-based searches in Router, the distances respect one-way roads
+ * but not turn restrictions.
+ */
+public class DistanceMatrix {
+
+	private final Graph graph;
+
+	// each thread's search state.
+	private final ThreadLocal<SearchState> states = new ThreadLocal<SearchState>() {
+		protected SearchState initialValue() {
+			return new SearchState(graph.nodeArray.length);
+		}
+	};
+
+	public DistanceMatrix(Graph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Returns the distances from each source to each target, with the
+	 * distance from sources[i] to targets[j] at i * targets.length + j.
+	 * Targets that can't be reached are infinity.
+	 */
+	public double[] compute(Node[] sources, Node[] targets, ForkJoinPool pool) {
+		int[] s = new int[sources.length], t = new int[targets.length];
+		for (int i = 0; i < s.length; i++)
+			s[i] = sources[i].index;
+		for (int j = 0; j < t.length; j++)
+			t[j] = targets[j].index;
+		return compute(s, t, pool);
+	}
+
+	/**
+	 * As above, with the nodes given by dense index.
+	 */
+	public double[] compute(int[] sources, int[] targets, ForkJoinPool pool) {
+		double[] matrix = new double[sources.length * targets.length];
+		// which nodes are targets, and the different ones, shared read only
+		// by all the searches.
+		boolean[] isTarget = new boolean[graph.nodeArray.length];
+		int[] distinct = new int[targets.length];
+		int count = 0;
+		for (int t : targets) {
+			if (!isTarget[t]) {
+				isTarget[t] = true;
+				distinct[count++] = t;
+			}
+		}
+		pool.invoke(new Rows(sources, targets, isTarget, Arrays.copyOf(
+				distinct, count), graph.components(), matrix, 0,
+				sources.length));
+		return matrix;
+	}
+
+	/**
+	 * Fills in the rows for sources lo up to hi, splitting the range in half
+	 * until it's a single row.
+	 */
+	private class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] sources, targets;
+		private final boolean[] isTarget;
+		private final int[] distinct;
+		private final Components components;
+		private final double[] matrix;
+		private final int lo, hi;
+
+		Rows(int[] sources, int[] targets, boolean[] isTarget, int[] distinct,
+				Components components, double[] matrix, int lo, int hi) {
+			this.sources = sources;
+			this.targets = targets;
+			this.isTarget = isTarget;
+			this.distinct = distinct;
+			this.components = components;
+			this.matrix = matrix;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		protected void compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Rows(sources, targets, isTarget, distinct,
+						components, matrix, lo, mid), new Rows(sources,
+						targets, isTarget, distinct, components, matrix, mid, hi));
+			} else if (hi > lo) {
+				row(sources[lo], targets, isTarget, distinct, components,
+						matrix, lo * targets.length);
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra from one source until all the targets it might reach are
+	 * settled, writing their distances into the matrix from at onwards.
+	 */
+	private void row(int source, int[] targets, boolean[] isTarget,
+			int[] distinct, Components components, double[] matrix, int at) {
+		SearchState state = states.get();
+		state.reset();
+		Adjacency out = graph.forward;
+		long[] closed = components.closed();
+		IndexedHeap fringe = state.fringe;
+		state.set(source, 0, -1);
+		fringe.push(source, 0);
+
+		// a target in another component would never be settled, and waiting
+		// for it would mean searching everything the source can reach.
+		int remaining = 0;
+		for (int t : distinct)
+			if (components.mayReach(source, t))
+				remaining++;
+		while (!fringe.isEmpty() && remaining > 0) {
+			int u = fringe.pop();
+			state.close(u);
+			if (isTarget[u])
+				remaining--;
+			double du = state.dist(u);
+			for (int e = out.start(u); e < out.end(u); e++) {
+				if (Graph.isClosed(closed, out.segment[e]))
+					continue;
+				int v = out.target[e];
+				double cost = du + out.length[e];
+				if (cost < state.dist(v)) {
+					state.set(v, cost, e);
+					fringe.push(v, cost);
+				}
+			}
+		}
+
+		for (int j = 0; j < targets.length; j++)
+			matrix[at + j] = state.isClosed(targets[j]) ? state.dist(targets[j])
+					: Double.POSITIVE_INFINITY;
+	}
+}
+
+// code for COMP261 assignments
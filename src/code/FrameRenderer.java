@@ -0,0 +1,211 @@
+package code;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A FrameRenderer draws the base map on its own thread, so the Swing event
+ * thread never has to wait for it. The event thread asks for a view with
+ * request, and when the render thread has finished a frame for it, it swaps
+ * the frame in as the latest one and calls the listener, which will usually
+ * ask for a repaint.
+ *
+ * Frames are drawn into back buffers which are never drawn on again once
+ * they're handed out. Every request bumps a generation counter, and the
+ * render thread gives up on a frame as soon as it notices it's been asked for
+ * a newer one, so moving around quickly doesn't queue up frames nobody will
+ * see.
+ */
+public class FrameRenderer {
+
+	private final TileRenderer tiles;
+	private final Runnable listener;
+	private final Thread thread;
+
+	// the view most recently asked for, and its generation number. Guarded by
+	// this.
+	private View wanted;
+	private long generation;
+	// the latest finished frame.
+	private volatile Frame latest;
+
+	// how long frames are taking to draw, for measuring.
+	private volatile long lastNanos, totalNanos;
+	private volatile int rendered, cancelled;
+
+	public FrameRenderer(TileRenderer tiles, Runnable listener) {
+		this.tiles = tiles;
+		this.listener = listener;
+		this.thread = new Thread(new Runnable() {
+			public void run() {
+				renderLoop();
+			}
+		}, "map renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Asks for a frame of the given view, cancelling any frame that's being
+	 * drawn for an older one. Asking again for the view of the latest frame,
+	 * or the one being drawn, does nothing.
+	 */
+	public synchronized void request(Dimension screen, Location origin,
+			double scale) {
+		View view = new View(screen, origin, scale);
+		if (view.equals(wanted))
+			return;
+		Frame frame = latest;
+		if (wanted == null && frame != null && view.equals(frame.view))
+			return;
+		wanted = view;
+		generation++;
+		notifyAll();
+	}
+
+	/**
+	 * Returns the latest finished frame, or null if there hasn't been one yet.
+	 */
+	public Frame latest() {
+		return latest;
+	}
+
+	/**
+	 * Stops the render thread. The last frame stays available.
+	 */
+	public void shutdown() {
+		thread.interrupt();
+	}
+
+	private void renderLoop() {
+		try {
+			while (true) {
+				final View view;
+				final long gen;
+				synchronized (this) {
+					while (wanted == null)
+						wait();
+					view = wanted;
+					gen = generation;
+				}
+
+				long start = System.nanoTime();
+				BufferedImage image = new BufferedImage(view.width, view.height,
+						BufferedImage.TYPE_INT_RGB);
+				Graphics g = image.getGraphics();
+				boolean done = tiles.draw(g, new Dimension(view.width,
+						view.height), view.origin, view.scale,
+						new BooleanSupplier() {
+							public boolean getAsBoolean() {
+								return isStale(gen);
+							}
+						});
+				g.dispose();
+
+				synchronized (this) {
+					if (!done || gen != generation) {
+						cancelled++;
+						continue;
+					}
+					latest = new Frame(view, image);
+					wanted = null;
+				}
+				lastNanos = System.nanoTime() - start;
+				totalNanos += lastNanos;
+				rendered++;
+				listener.run();
+			}
+		} catch (InterruptedException e) {
+			// shut down.
+		}
+	}
+
+	private synchronized boolean isStale(long gen) {
+		return gen != generation;
+	}
+
+	/**
+	 * Returns how long the last finished frame took to draw, in milliseconds.
+	 */
+	public double lastRenderMillis() {
+		return lastNanos / 1e6;
+	}
+
+	/**
+	 * Returns the average time taken to draw a finished frame, in
+	 * milliseconds.
+	 */
+	public double averageRenderMillis() {
+		return rendered == 0 ? 0 : totalNanos / 1e6 / rendered;
+	}
+
+	public int framesRendered() {
+		return rendered;
+	}
+
+	public int framesCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * The part of the map a frame shows.
+	 */
+	public static class View {
+		public final int width, height;
+		public final Location origin;
+		public final double scale;
+
+		View(Dimension screen, Location origin, double scale) {
+			this.width = Math.max(1, screen.width);
+			this.height = Math.max(1, screen.height);
+			this.origin = origin;
+			this.scale = scale;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof View))
+				return false;
+			View v = (View) o;
+			return v.width == width && v.height == height
+					&& v.origin.x == origin.x && v.origin.y == origin.y
+					&& v.scale == scale;
+		}
+
+		public int hashCode() {
+			return width * 31 + height;
+		}
+	}
+
+	/**
+	 * A finished frame: an image of the base map, and the view it shows.
+	 */
+	public static class Frame {
+		public final View view;
+		public final BufferedImage image;
+
+		Frame(View view, BufferedImage image) {
+			this.view = view;
+			this.image = image;
+		}
+
+		/**
+		 * Draws this frame onto g for a possibly different view, moving and
+		 * stretching it so the map lines up, until a frame for the new view
+		 * is ready.
+		 */
+		public void draw(Graphics g, Location origin, double scale) {
+			double zoom = scale / view.scale;
+			int x = (int) Math.round((view.origin.x - origin.x) * scale);
+			int y = (int) Math.round((origin.y - view.origin.y) * scale);
+			if (zoom == 1)
+				g.drawImage(image, x, y, null);
+			else
+				g.drawImage(image, x, y, (int) Math.round(view.width * zoom),
+						(int) Math.round(view.height * zoom), null);
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -68,6 +68,16 @@ public abstract class GUI {
 	 */
 	protected abstract void artPts();
 
+	/**
+	 * This is called to switch between the kinds of route search
+	 */
+	protected abstract void routeMode();
+
+	/**
+	 * This is called to show what can be reached from the selected node
+	 */
+	protected abstract void isochrone();
+
 	/**
 	 * Is called when the drawing area is redrawn and performs all the logic for
 	 * the actual drawing, which is done with the passed Graphics object.
@@ -94,9 +104,9 @@ public abstract class GUI {
 
 	/**
 	 * Is called when the user has successfully selected a directory to load the
-	 * data files from. File objects representing the four files of interested
-	 * are passed to the method. The fourth File, polygons, might be null if it
-	 * isn't present in the directory.
+	 * data files from. File objects representing the five files of interested
+	 * are passed to the method. The last two, polygons and restrictions, might
+	 * be null if they aren't present in the directory.
 	 * 
 	 * @param nodes
 	 *            a File for nodeID-lat-lon.tab
@@ -106,9 +116,11 @@ public abstract class GUI {
 	 *            a File for roadSeg-roadID-length-nodeID-nodeID-coords.tab
 	 * @param polygons
 	 *            a File for polygon-shapes.mp
+	 * @param restrictions
+	 *            a File for restrictions.tab
 	 */
 	protected abstract void onLoad(File nodes, File roads, File segments,
-			File polygons);
+			File polygons, File restrictions);
 
 	// here are some useful methods you'll need.
 
@@ -160,6 +172,7 @@ public abstract class GUI {
 	private static final String ROADS_FILENAME = "roadID-roadInfo.tab";
 	private static final String SEGS_FILENAME = "roadSeg-roadID-length-nodeID-nodeID-coords.tab";
 	private static final String POLYS_FILENAME = "polygon-shapes.mp";
+	private static final String RESTRICTIONS_FILENAME = "restrictions.tab";
 
 
 	/*
@@ -210,6 +223,7 @@ public abstract class GUI {
 		load.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
 				File nodes = null, roads = null, segments = null, polygons = null;
+				File restrictions = null;
 
 				// set up the file chooser
 				fileChooser.setCurrentDirectory(new File("."));
@@ -232,6 +246,8 @@ public abstract class GUI {
 							segments = f;
 						} else if (f.getName().equals(POLYS_FILENAME)) {
 							polygons = f;
+						} else if (f.getName().equals(RESTRICTIONS_FILENAME)) {
+							restrictions = f;
 						}
 					}
 
@@ -242,7 +258,7 @@ public abstract class GUI {
 								"Directory does not contain correct files",
 								"Error", JOptionPane.ERROR_MESSAGE);
 					} else {
-						onLoad(nodes, roads, segments, polygons);
+						onLoad(nodes, roads, segments, polygons, restrictions);
 						redraw();
 					}
 				}
@@ -264,6 +280,22 @@ public abstract class GUI {
 			}
 		});
 		
+		JButton routeMode = new JButton("Route Mode");
+		routeMode.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ev) {
+				routeMode();
+				redraw();
+			}
+		});
+		
+		JButton isochrone = new JButton("Isochrone");
+		isochrone.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent ev) {
+				isochrone();
+				redraw();
+			}
+		});
+		
 		JButton deselect = new JButton("Deselect");
 		deselect.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent ev) {
@@ -375,6 +407,8 @@ public abstract class GUI {
 		loadquit.add(load);
 		loadquit.add(astar);
 		loadquit.add(artPts);
+		loadquit.add(routeMode);
+		loadquit.add(isochrone);
 		loadquit.add(quit);
 		loadquit.add(deselect);
 		controls.add(loadquit);
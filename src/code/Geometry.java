@@ -0,0 +1,293 @@
+package code;
+
+import java.awt.Graphics;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geometry holds the shapes of all the segments in the graph, packed into one
+ * float array instead of an array of Location objects per segment. The
+ * vertices of shape i (which is the shape of the segment with index i) are
+ * vertices offset[i] up to (but not including) offset[i + 1], and vertex v is
+ * stored as its Location coordinates at xy[2v] and xy[2v + 1].
+ *
+ * Floats are plenty: the map is less than a couple of hundred kilometres
+ * across, so they are accurate to a few millimetres.
+ *
+ * Once all the shapes are in, buildLevels makes simplified copies of the
+ * geometry at a few tolerances, and draw picks the coarsest one that is still
+ * accurate to within a pixel or so at the scale it is drawing at.
+ */
+public class Geometry {
+
+	// how far (in km) the shapes at each level of detail may stray from the
+	// originals; each is four times coarser than the one before.
+	private static final double[] LEVEL_TOLERANCES = { 0.01, 0.04, 0.16, 0.64 };
+	// how far (in pixels) a simplified shape may be from the real one before
+	// it's noticeable.
+	private static final double MAX_ERROR_PIXELS = 0.5;
+
+	float[] xy;
+	int[] offset;
+	private int shapes, vertices;
+	// simplified copies of this geometry, levels[k] to within
+	// LEVEL_TOLERANCES[k], or null if they haven't been built.
+	private Geometry[] levels;
+	// the larger of the width and height of each shape.
+	private float[] extent;
+
+	public Geometry() {
+		this.xy = new float[1024];
+		this.offset = new int[64];
+	}
+
+	Geometry(float[] xy, int[] offset) {
+		this.xy = xy;
+		this.offset = offset;
+		this.shapes = offset.length - 1;
+		this.vertices = xy.length / 2;
+	}
+
+	/**
+	 * Adds a shape given as count/2 latitude, longitude pairs, returning its
+	 * shape number.
+	 */
+	public int add(double[] latLon, int count) {
+		int n = count / 2;
+		if (shapes + 2 > offset.length)
+			offset = Arrays.copyOf(offset, offset.length * 2);
+		if (2 * (vertices + n) > xy.length)
+			xy = Arrays.copyOf(xy, Math.max(xy.length * 2, 2 * (vertices + n)));
+
+		for (int i = 0; i < n; i++) {
+			Location loc = Location.newFromLatLon(latLon[2 * i],
+					latLon[2 * i + 1]);
+			xy[2 * vertices] = (float) loc.x;
+			xy[2 * vertices + 1] = (float) loc.y;
+			vertices++;
+		}
+		offset[++shapes] = vertices;
+		return shapes - 1;
+	}
+
+	/**
+	 * Joins several geometries into one, with the shapes of each following
+	 * those of the one before.
+	 */
+	public static Geometry concat(List<Geometry> parts) {
+		int shapes = 0, vertices = 0;
+		for (Geometry part : parts) {
+			shapes += part.shapes;
+			vertices += part.vertices;
+		}
+
+		float[] xy = new float[2 * vertices];
+		int[] offset = new int[shapes + 1];
+		shapes = 0;
+		vertices = 0;
+		for (Geometry part : parts) {
+			System.arraycopy(part.xy, 0, xy, 2 * vertices, 2 * part.vertices);
+			for (int i = 1; i <= part.shapes; i++)
+				offset[shapes + i] = vertices + part.offset[i];
+			shapes += part.shapes;
+			vertices += part.vertices;
+		}
+		return new Geometry(xy, offset);
+	}
+
+	/**
+	 * Drops the spare room left at the end of the arrays while adding shapes.
+	 */
+	public void trim() {
+		xy = Arrays.copyOf(xy, 2 * vertices);
+		offset = Arrays.copyOf(offset, shapes + 1);
+	}
+
+	public int shapeCount() {
+		return shapes;
+	}
+
+	public int vertexCount() {
+		return vertices;
+	}
+
+	public int start(int shape) {
+		return offset[shape];
+	}
+
+	public int end(int shape) {
+		return offset[shape + 1];
+	}
+
+	public double x(int vertex) {
+		return xy[2 * vertex];
+	}
+
+	public double y(int vertex) {
+		return xy[2 * vertex + 1];
+	}
+
+	public Location location(int vertex) {
+		return new Location(xy[2 * vertex], xy[2 * vertex + 1]);
+	}
+
+	/**
+	 * Returns the larger of the width and height of a shape's bounding box.
+	 */
+	public double extent(int shape) {
+		return extent[shape];
+	}
+
+	/**
+	 * Builds the simplified levels of detail, and the extent of each shape.
+	 * This has to be called again if shapes are added.
+	 */
+	public void buildLevels() {
+		float[] box = bounds();
+		extent = new float[shapes];
+		for (int i = 0; i < shapes; i++)
+			extent[i] = Math.max(box[4 * i + 2] - box[4 * i],
+					box[4 * i + 3] - box[4 * i + 1]);
+
+		levels = new Geometry[LEVEL_TOLERANCES.length];
+		for (int k = 0; k < levels.length; k++)
+			levels[k] = simplify(LEVEL_TOLERANCES[k]);
+	}
+
+	/**
+	 * Returns the coarsest level of detail that is good enough to draw at the
+	 * given scale, which is this geometry itself if none of them are.
+	 */
+	public Geometry levelFor(double scale) {
+		if (levels == null)
+			return this;
+		for (int k = levels.length - 1; k >= 0; k--)
+			if (LEVEL_TOLERANCES[k] * scale <= MAX_ERROR_PIXELS)
+				return levels[k];
+		return this;
+	}
+
+	/**
+	 * Returns a copy of this geometry with each shape simplified by the
+	 * Douglas-Peucker algorithm: the first and last vertices are kept, and so
+	 * is any vertex further than the tolerance from the line between the
+	 * vertices kept either side of it.
+	 */
+	public Geometry simplify(double tolerance) {
+		float[] outXY = new float[2 * vertices];
+		int[] outOffset = new int[shapes + 1];
+		boolean[] keep = new boolean[vertices];
+		// ranges still to be looked at, as pairs of vertex numbers.
+		int[] stack = new int[64];
+		int kept = 0;
+
+		for (int i = 0; i < shapes; i++) {
+			int from = offset[i], to = offset[i + 1] - 1;
+			if (to > from) {
+				keep[from] = keep[to] = true;
+				int top = 0;
+				stack[top++] = from;
+				stack[top++] = to;
+				while (top > 0) {
+					int b = stack[--top], a = stack[--top];
+					// find the vertex furthest from the line a-b.
+					int far = -1;
+					double worst = tolerance * tolerance;
+					for (int v = a + 1; v < b; v++) {
+						double d = distanceSq(v, a, b);
+						if (d > worst) {
+							worst = d;
+							far = v;
+						}
+					}
+					if (far < 0)
+						continue;
+					keep[far] = true;
+					if (top + 4 > stack.length)
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					stack[top++] = a;
+					stack[top++] = far;
+					stack[top++] = far;
+					stack[top++] = b;
+				}
+			} else if (to == from) {
+				keep[from] = true;
+			}
+
+			for (int v = offset[i]; v < offset[i + 1]; v++) {
+				if (keep[v]) {
+					outXY[2 * kept] = xy[2 * v];
+					outXY[2 * kept + 1] = xy[2 * v + 1];
+					kept++;
+				}
+			}
+			outOffset[i + 1] = kept;
+		}
+		return new Geometry(Arrays.copyOf(outXY, 2 * kept), outOffset);
+	}
+
+	/**
+	 * Returns the squared distance from vertex v to the line segment between
+	 * vertices a and b.
+	 */
+	private double distanceSq(int v, int a, int b) {
+		double ax = xy[2 * a], ay = xy[2 * a + 1];
+		double dx = xy[2 * b] - ax, dy = xy[2 * b + 1] - ay;
+		double px = xy[2 * v] - ax, py = xy[2 * v + 1] - ay;
+		double lengthSq = dx * dx + dy * dy;
+		double t = lengthSq == 0 ? 0 : (px * dx + py * dy) / lengthSq;
+		t = Math.max(0, Math.min(1, t));
+		double ex = px - t * dx, ey = py - t * dy;
+		return ex * ex + ey * ey;
+	}
+
+	/**
+	 * Returns the bounding box of every shape, as min x, min y, max x, max y,
+	 * four floats per shape.
+	 */
+	public float[] bounds() {
+		float[] box = new float[4 * shapes];
+		for (int i = 0; i < shapes; i++) {
+			float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+			float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+			for (int v = offset[i]; v < offset[i + 1]; v++) {
+				x0 = Math.min(x0, xy[2 * v]);
+				y0 = Math.min(y0, xy[2 * v + 1]);
+				x1 = Math.max(x1, xy[2 * v]);
+				y1 = Math.max(y1, xy[2 * v + 1]);
+			}
+			box[4 * i] = x0;
+			box[4 * i + 1] = y0;
+			box[4 * i + 2] = x1;
+			box[4 * i + 3] = y1;
+		}
+		return box;
+	}
+
+	/**
+	 * Draws a shape as a polyline, at the level of detail suited to the scale.
+	 * This does the same sums as Location.asPoint, without making a Point for
+	 * every vertex.
+	 */
+	public void draw(Graphics g, int shape, Location origin, double scale) {
+		levelFor(scale).drawShape(g, shape, origin, scale);
+	}
+
+	private void drawShape(Graphics g, int shape, Location origin, double scale) {
+		int from = offset[shape], to = offset[shape + 1];
+		if (to - from < 2)
+			return;
+
+		int px = (int) ((xy[2 * from] - origin.x) * scale);
+		int py = (int) ((origin.y - xy[2 * from + 1]) * scale);
+		for (int v = from + 1; v < to; v++) {
+			int qx = (int) ((xy[2 * v] - origin.x) * scale);
+			int qy = (int) ((origin.y - xy[2 * v + 1]) * scale);
+			g.drawLine(px, py, qx, qy);
+			px = qx;
+			py = qy;
+		}
+	}
+}
+
+// code for COMP261 assignments
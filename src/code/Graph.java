@@ -5,11 +5,23 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 /**
  * This represents the data structure storing all the roads, nodes, and
@@ -26,27 +38,483 @@ public class Graph {
 	// just some collection of Segments.
 	Collection<Segment> segments;
 
+	// dense arrays of the nodes and segments, indexed by Node.index and
+	// Segment.index.
+	Node[] nodeArray;
+	Segment[] segmentArray;
+	// compressed-sparse-row adjacency for each direction of travel.
+	Adjacency forward, backward;
+	// the shapes of all the segments, packed together.
+	Geometry geometry;
+	// spatial index over the node locations, by dense node index.
+	KDTree nodeIndex;
+	// spatial index over the segment bounding boxes, by dense segment index.
+	SpatialGrid segmentIndex;
+	// the lakes, parks, coastline and so on, or null if there were none.
+	PolygonLayer polygons;
+	// the banned turns, or null if there were none.
+	TurnRestrictions restrictions;
+	// the files the graph was read from, which saved preprocessing is tied to.
+	final File[] sources;
+	// built or loaded the first time a hierarchy query is made.
+	private ContractionHierarchy hierarchy;
+	// built the first time a router is made for the graph.
+	private Landmarks landmarks;
+	// worked out the first time it's asked for, and kept up to date as
+	// segments are closed and reopened, and a copy of its articulation points
+	// and bridges for other threads, made again after each change.
+	private Biconnectivity biconnectivity;
+	private volatile Biconnectivity.WeakPoints weakPoints;
+	// the component labels of the open edges, worked out after loading and
+	// again the first time they're asked for after a closure.
+	private volatile Components components;
+	// which segments are closed, one bit per dense segment index, or null if
+	// none are, and how many. the set is copied on every change rather than
+	// changed in place, so a search that reads it once sees the same closures
+	// all the way through, and the adjacencies are never written to.
+	private volatile long[] closed;
+	private volatile int closedCount;
+	// one-to-many searches for distance matrices.
+	private final DistanceMatrix matrix = new DistanceMatrix(this);
+	// bumped whenever the edges or their weights change, so that anything
+	// worked out from them knows to throw it away.
+	private final AtomicInteger version = new AtomicInteger();
+
+	// the area reachable from a node, drawn over the map, or null.
+	Isochrone isochrone;
+
 	Node highlightedNode;
 	Collection<Road> highlightedRoads = new HashSet<Road>();
 	Collection<Segment> highlightedSegment = new ArrayList<Segment>();
 
-	public Graph(File nodes, File roads, File segments, File polygons) {
-		this.nodes = Parser.parseNodes(nodes, this);
-		this.roads = Parser.parseRoads(roads, this);
-		this.segments = Parser.parseSegments(segments, this);
+	public Graph(File nodes, File roads, File segments, File polygons,
+			File restrictions) {
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		this.sources = new File[] { nodes, roads, segments };
+		File snapshot = Snapshot.fileFor(nodes);
+		boolean mapped;
+		try {
+			// the polygons don't depend on anything else, so read them in the
+			// background while the rest is loading.
+			Future<PolygonLayer> shapes = null;
+			if (polygons != null)
+				shapes = pool.submit(new Callable<PolygonLayer>() {
+					public PolygonLayer call() {
+						return Parser.parsePolygons(polygons);
+					}
+				});
+
+			// map a snapshot of a previous load if there's an up to date one,
+			// otherwise parse the text files and write a snapshot for next
+			// time.
+			mapped = Snapshot.load(snapshot, sources, this);
+			if (!mapped) {
+				this.nodes = Parser.parseNodes(nodes, this, pool);
+				this.roads = Parser.parseRoads(roads, this);
+				this.segments = Parser.parseSegments(segments, this, pool);
+			}
+			buildAdjacency();
+			if (restrictions != null)
+				this.restrictions = Parser.parseRestrictions(restrictions, this);
+			this.components = Components.build(this, null);
+
+			if (shapes != null)
+				this.polygons = shapes.get();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("file reading failed.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("file reading interrupted.", e);
+		} finally {
+			pool.shutdown();
+		}
+
+		if (!mapped) {
+			try {
+				Snapshot.save(snapshot, sources, this);
+			} catch (IOException e) {
+				// not being able to write one only costs us speed next time.
+				System.err.println("could not write snapshot " + snapshot
+						+ ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the contraction hierarchy for the graph, loading it from next to
+	 * the data files if there's an up to date one there, and otherwise
+	 * building it (which takes a while) and saving it for next time.
+	 */
+	public synchronized ContractionHierarchy hierarchy() {
+		if (hierarchy != null)
+			return hierarchy;
+		File file = ContractionHierarchy.fileFor(sources[0]);
+		hierarchy = ContractionHierarchy.load(file, sources, this);
+		if (hierarchy == null) {
+			ExecutorService pool = Executors.newFixedThreadPool(Runtime
+					.getRuntime().availableProcessors());
+			try {
+				hierarchy = ContractionHierarchy.build(this, pool);
+			} finally {
+				pool.shutdown();
+			}
+			try {
+				hierarchy.save(file, sources);
+			} catch (IOException e) {
+				System.err.println("could not write hierarchy " + file + ": "
+						+ e);
+			}
+		}
+		return hierarchy;
+	}
+
+	/**
+	 * Returns the landmark distance tables for the A* heuristic, building them
+	 * the first time they're asked for.
+	 */
+	public synchronized Landmarks landmarks() {
+		if (landmarks == null) {
+			ExecutorService pool = Executors.newFixedThreadPool(Runtime
+					.getRuntime().availableProcessors());
+			try {
+				landmarks = Landmarks.build(this, Landmarks.DEFAULT_COUNT, pool);
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return landmarks;
+	}
+
+	/**
+	 * Returns the articulation points, bridges and blocks of the open
+	 * segments, working them out the first time they're asked for. They're
+	 * changed in place as segments are closed and reopened, so a thread that
+	 * may read them meanwhile, like the one painting, should use weakPoints.
+	 */
+	public synchronized Biconnectivity biconnectivity() {
+		if (biconnectivity == null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				biconnectivity = Biconnectivity.build(this, closed, pool,
+						threads);
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return biconnectivity;
+	}
+
+	/**
+	 * Returns a copy of the articulation points and bridges of the open
+	 * segments as they are now, which closures made afterwards don't change.
+	 */
+	public Biconnectivity.WeakPoints weakPoints() {
+		Biconnectivity.WeakPoints w = weakPoints;
+		if (w == null) {
+			synchronized (this) {
+				if (weakPoints == null)
+					weakPoints = biconnectivity().weakPoints();
+				w = weakPoints;
+			}
+		}
+		return w;
+	}
+
+	/**
+	 * Returns the connected and strongly connected components of the open
+	 * edges. A search should use the closures they were worked out for,
+	 * Components.closed(), so that the two agree.
+	 */
+	public Components components() {
+		Components c = components;
+		if (c == null) {
+			synchronized (this) {
+				if (components == null)
+					components = Components.build(this, closed);
+				c = components;
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Closes a segment, say for roadworks, so that no route uses it, and
+	 * updates the articulation points and bridges if they've been worked out.
+	 * Returns false if it was already closed.
+	 */
+	public synchronized boolean closeSegment(Segment segment) {
+		if (isClosed(closed, segment.index))
+			return false;
+		long[] next = closed == null ? new long[(segmentArray.length + 63) >>> 6]
+				: closed.clone();
+		next[segment.index >>> 6] |= 1L << segment.index;
+		closed = next;
+		closedCount++;
+		if (biconnectivity != null)
+			biconnectivity.remove(segment);
+		weakPoints = null;
+		components = null;
+		changed();
+		return true;
+	}
+
+	/**
+	 * Reopens a closed segment. Returns false if it wasn't closed.
+	 */
+	public synchronized boolean reopenSegment(Segment segment) {
+		if (!isClosed(closed, segment.index))
+			return false;
+		if (closedCount == 1) {
+			closed = null;
+		} else {
+			long[] next = closed.clone();
+			next[segment.index >>> 6] &= ~(1L << segment.index);
+			closed = next;
+		}
+		closedCount--;
+		if (biconnectivity != null)
+			biconnectivity.add(segment);
+		weakPoints = null;
+		components = null;
+		changed();
+		return true;
+	}
+
+	public boolean isClosed(Segment segment) {
+		return isClosed(closed, segment.index);
+	}
+
+	/**
+	 * Returns whether a segment, by dense index, is in a set of closures as
+	 * returned by closedSegments(), which is null when nothing is closed.
+	 */
+	static boolean isClosed(long[] closed, int segment) {
+		return closed != null && (closed[segment >>> 6] & 1L << segment) != 0;
+	}
+
+	/**
+	 * Returns the segments closed right now, as a bit set by dense segment
+	 * index, or null if none are. The array is never changed once returned.
+	 */
+	long[] closedSegments() {
+		return closed;
+	}
+
+	/**
+	 * Returns how many segments are closed. While any are, the hierarchy,
+	 * which is built over all of them, isn't used.
+	 */
+	public int closedCount() {
+		return closedCount;
+	}
+
+	public int version() {
+		return version.get();
+	}
+
+	/**
+	 * Records that the edges or their weights have changed.
+	 */
+	void changed() {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Returns the shortest path distances from each source to each target, on
+	 * the common ForkJoinPool, as a dense matrix with the distance from
+	 * sources[i] to targets[j] at i * targets.length + j.
+	 */
+	public double[] distanceMatrix(Node[] sources, Node[] targets) {
+		return matrix.compute(sources, targets, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Numbers the nodes and segments densely, adds the segments to their
+	 * roads, and builds the forward and backward adjacency arrays. This has
+	 * to be done once all the segments have been parsed.
+	 */
+	private void buildAdjacency() {
+		// the nodes are numbered in ID order, rather than whatever order the
+		// map happens to hold them in, so that the numbering is the same
+		// however they were loaded and preprocessing saved by index still
+		// fits. the segments are already in file order.
+		nodeArray = nodes.values().toArray(new Node[nodes.size()]);
+		Arrays.sort(nodeArray, new Comparator<Node>() {
+			public int compare(Node a, Node b) {
+				return Integer.compare(a.nodeID, b.nodeID);
+			}
+		});
+		for (int i = 0; i < nodeArray.length; i++)
+			nodeArray[i].index = i;
+
+		segmentArray = segments.toArray(new Segment[segments.size()]);
+		for (int i = 0; i < segmentArray.length; i++) {
+			segmentArray[i].index = i;
+			segmentArray[i].road.addSegment(segmentArray[i]);
+		}
+
+		forward = Adjacency.build(nodeArray.length, segmentArray, false);
+		backward = Adjacency.build(nodeArray.length, segmentArray, true);
+
+		double[] x = new double[nodeArray.length];
+		double[] y = new double[nodeArray.length];
+		for (int i = 0; i < nodeArray.length; i++) {
+			x[i] = nodeArray[i].location.x;
+			y[i] = nodeArray[i].location.y;
+		}
+		nodeIndex = new KDTree(x, y);
+		segmentIndex = new SpatialGrid(geometry.bounds());
+		geometry.buildLevels();
+	}
+
+	/**
+	 * Returns the node closest to a location, or null if there are no nodes.
+	 */
+	public Node findNearest(Location loc) {
+		int i = nodeIndex.nearest(loc.x, loc.y);
+		return i < 0 ? null : nodeArray[i];
+	}
+
+	/**
+	 * Returns the k nodes closest to a location, closest first.
+	 */
+	public List<Node> findNearest(Location loc, int k) {
+		List<Node> found = new ArrayList<Node>(k);
+		for (int i : nodeIndex.nearest(loc.x, loc.y, k))
+			found.add(nodeArray[i]);
+		return found;
+	}
+
+	/**
+	 * Snaps each of a batch of locations to its closest node.
+	 */
+	public Node[] findNearest(Location[] locs) {
+		Node[] found = new Node[locs.length];
+		for (int i = 0; i < locs.length; i++)
+			found[i] = findNearest(locs[i]);
+		return found;
+	}
+
+	/**
+	 * Returns the number of segments at a node, counting each once whichever
+	 * ways it can be driven.
+	 */
+	public int degree(Node node) {
+		int u = node.index, count = 0;
+		for (int e = forward.start(u); e < forward.end(u); e++)
+			if (!isRepeat(u, e))
+				count++;
+		for (int e = backward.start(u); e < backward.end(u); e++)
+			if (isOnlyBackward(u, e))
+				count++;
+		return count;
+	}
+
+	/**
+	 * Returns the k'th segment at a node, for 0 <= k < degree(node). The ones
+	 * that can be driven away from the node come first, followed by the
+	 * one-way ones that only arrive at it.
+	 */
+	public Segment segment(Node node, int k) {
+		int u = node.index;
+		for (int e = forward.start(u); e < forward.end(u); e++)
+			if (!isRepeat(u, e) && k-- == 0)
+				return segmentArray[forward.segment[e]];
+		for (int e = backward.start(u); e < backward.end(u); e++)
+			if (isOnlyBackward(u, e) && k-- == 0)
+				return segmentArray[backward.segment[e]];
+		throw new IndexOutOfBoundsException("segment " + k + " of node "
+				+ node.nodeID);
+	}
+
+	/**
+	 * Returns the node at the other end of the k'th segment at a node, which
+	 * is the node itself for a loop.
+	 */
+	public Node neighbour(Node node, int k) {
+		Segment seg = segment(node, k);
+		return seg.start == node ? seg.end : seg.start;
+	}
+
+	// a two-way segment is a forward edge at both its ends, and a two-way
+	// loop is two forward edges at its node, added one after the other, of
+	// which only the first counts.
+	private boolean isRepeat(int u, int e) {
+		return e > forward.start(u)
+				&& forward.segment[e - 1] == forward.segment[e];
+	}
+
+	// a one-way segment is only a backward edge at the node it ends at,
+	// unless it's a loop, which is a forward edge there too.
+	private boolean isOnlyBackward(int u, int e) {
+		Segment seg = segmentArray[backward.segment[e]];
+		return seg.road.oneWay() && seg.start.index != u;
 	}
 
 	public void draw(Graphics g, Dimension screen, Location origin, double scale) {
+		drawBase(g, screen, origin, scale);
+		drawOverlays(g, screen, origin, scale);
+	}
+
+	/**
+	 * Draws the parts of the map that only change when the view does: the
+	 * segments and the nodes. This is what goes into the cached tiles.
+	 */
+	public void drawBase(Graphics g, Dimension screen, Location origin, double scale) {
 		// a compatibility wart on swing is that it has to give out Graphics
 		// objects, but Graphics2D objects are nicer to work with. Luckily
 		// they're a subclass, and swing always gives them out anyway, so we can
 		// just do this.
-		Graphics2D g2 = (Graphics2D) g;
+		final Graphics2D g2 = (Graphics2D) g;
+		final Dimension area = screen;
+		final Location o = origin;
+		final double s = scale;
 
-		// draw all the segments.
+		// work out the part of the map that's on screen, with a little slack
+		// so the nodes on the edge are still drawn.
+		double slack = (Mapper.NODE_GRADIENT * Math.log(scale)
+				+ Mapper.NODE_INTERCEPT) / scale;
+		double x0 = origin.x - slack, y1 = origin.y + slack;
+		double x1 = origin.x + screen.width / scale + slack;
+		double y0 = origin.y - screen.height / scale - slack;
+
+		// a segment that fits inside half a node square is hidden under the
+		// square of the node at its start, so there's no point drawing it.
+		final double hidden = (int) (Mapper.NODE_GRADIENT * Math.log(scale)
+				+ Mapper.NODE_INTERCEPT) / 2.0 / scale;
+
+		// fill in the polygons under everything else.
+		if (polygons != null)
+			polygons.draw(g2, screen, origin, scale);
+
+		// draw the segments that are on screen.
 		g2.setColor(Mapper.SEGMENT_COLOUR);
-		for (Segment s : segments)
-			s.draw(g2, origin, scale);
+		segmentIndex.query(x0, y0, x1, y1, new IntConsumer() {
+			public void accept(int i) {
+				if (geometry.extent(i) >= hidden)
+					segmentArray[i].draw(g2, o, s);
+			}
+		});
+
+		// draw the nodes that are on screen.
+		g2.setColor(Mapper.NODE_COLOUR);
+		nodeIndex.range(x0, y0, x1, y1, new IntConsumer() {
+			public void accept(int i) {
+				nodeArray[i].draw(g2, area, o, s);
+			}
+		});
+	}
+
+	/**
+	 * Draws the highlighted roads and shortest path on top of the base map.
+	 */
+	public void drawOverlays(Graphics g, Dimension screen, Location origin, double scale) {
+		Graphics2D g2 = (Graphics2D) g;
+
+		if (isochrone != null)
+			isochrone.draw(g2, this, screen, origin, scale);
 
 		// draw the segments of all highlighted roads.
 		g2.setColor(Mapper.HIGHLIGHT_COLOUR);
@@ -57,11 +525,6 @@ public class Graph {
 			}
 		}
 
-		// draw all the nodes.
-		g2.setColor(Mapper.NODE_COLOUR);
-		for (Node n : nodes.values())
-			n.draw(g2, screen, origin, scale);
-
 		// draw the shortest path between the nodes
 		if(highlightedSegment != null){
 			g2.setColor(Mapper.HIGHLIGHT_PATH_COLOUR);
@@ -69,10 +532,6 @@ public class Graph {
 				seg.draw(g2, origin, scale);
 			}
 		}
-
-
-
-
 	}
 
 	public void setHighlight(Node node) {
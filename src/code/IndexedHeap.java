@@ -0,0 +1,139 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * An IndexedHeap is a binary min-heap of int handles (for searches, dense node
+ * indices) ordered by double keys. Unlike java.util.PriorityQueue it knows
+ * where each handle is in the heap, so a handle's key can be lowered in place
+ * instead of adding a second entry for it, and nothing is allocated once the
+ * heap has been made.
+ *
+ * Handles must be between 0 and the capacity given when the heap is made.
+ */
+public class IndexedHeap {
+
+	// the handles in heap order, and their keys, in parallel.
+	private final int[] heap;
+	private final double[] keys;
+	// where each handle is in the heap, or -1 if it isn't.
+	private final int[] position;
+	private int size;
+
+	public IndexedHeap(int capacity) {
+		this.heap = new int[capacity];
+		this.keys = new double[capacity];
+		this.position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int handle) {
+		return position[handle] >= 0;
+	}
+
+	/**
+	 * Adds a handle with the given key, or if it's already in the heap, lowers
+	 * its key to the given one (a higher key is ignored).
+	 */
+	public void push(int handle, double key) {
+		int i = position[handle];
+		if (i < 0) {
+			i = size++;
+		} else if (key >= keys[i]) {
+			return;
+		}
+		siftUp(i, handle, key);
+	}
+
+	/**
+	 * Returns the handle with the smallest key, without removing it.
+	 */
+	public int peek() {
+		return heap[0];
+	}
+
+	/**
+	 * Returns the smallest key in the heap.
+	 */
+	public double peekKey() {
+		return keys[0];
+	}
+
+	/**
+	 * Removes and returns the handle with the smallest key.
+	 */
+	public int pop() {
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0)
+			siftDown(0, heap[size], keys[size]);
+		return top;
+	}
+
+	/**
+	 * Empties the heap. This takes time in proportion to what's left in it,
+	 * not to the capacity.
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			position[heap[i]] = -1;
+		size = 0;
+	}
+
+	/**
+	 * Puts a handle and key at position i, moving it up past any parents with
+	 * bigger keys.
+	 */
+	private void siftUp(int i, int handle, double key) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key)
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		place(i, handle, key);
+	}
+
+	/**
+	 * Puts a handle and key at position i, moving it down past any children
+	 * with smaller keys.
+	 */
+	private void siftDown(int i, int handle, double key) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if (keys[child] >= key)
+				break;
+			move(child, i);
+			i = child;
+		}
+		place(i, handle, key);
+	}
+
+	private void move(int from, int to) {
+		heap[to] = heap[from];
+		keys[to] = keys[from];
+		position[heap[to]] = to;
+	}
+
+	private void place(int i, int handle, double key) {
+		heap[i] = handle;
+		keys[i] = key;
+		position[handle] = i;
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,166 @@
+package code;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * An Isochrone is everything reachable from an origin node within a cost
+ * limit (a distance in kilometres, or a time in hours): the reached nodes
+ * with their costs, and the boundary segments, which lead from a reached node
+ * to one that is out of reach.
+ *
+ * The results are primitive arrays, valid up to nodeCount and boundaryCount,
+ * which grow as needed but are otherwise kept from one search to the next, so
+ * filling the same Isochrone again from a nearby origin allocates nothing.
+ *
+ * It can also draw itself as a rasterised overlay: the screen is divided into
+ * cells, every cell a reached segment passes through is filled, and the
+ * boundary segments are drawn on top.
+ */
+public class Isochrone {
+
+	// the size of an overlay cell in pixels.
+	private static final int CELL = 6;
+	private static final Color FILL = new Color(255, 140, 0, 70);
+	private static final Color BOUNDARY = new Color(230, 90, 0);
+
+	public Node origin;
+	public double limit;
+	public Router.Profile profile;
+
+	// the reached nodes by dense index, and the cost of reaching each.
+	public int[] nodes = new int[256];
+	public double[] costs = new double[256];
+	public int nodeCount;
+	// the segments that leave the reached area, by dense index.
+	public int[] boundary = new int[64];
+	public int boundaryCount;
+
+	// the overlay, reused while the screen stays the same size.
+	private BufferedImage overlay;
+	private int[] pixels;
+	// which nodes are reached, by dense index, set only while drawing.
+	private boolean[] reached = new boolean[0];
+	// the range along a line that's on screen, while clipping it.
+	private final double[] range = new double[2];
+
+	void clear(Node origin, double limit, Router.Profile profile) {
+		this.origin = origin;
+		this.limit = limit;
+		this.profile = profile;
+		nodeCount = 0;
+		boundaryCount = 0;
+	}
+
+	void addNode(int node, double cost) {
+		if (nodeCount == nodes.length) {
+			nodes = Arrays.copyOf(nodes, nodeCount * 2);
+			costs = Arrays.copyOf(costs, nodeCount * 2);
+		}
+		nodes[nodeCount] = node;
+		costs[nodeCount++] = cost;
+	}
+
+	void addBoundary(int segment) {
+		if (boundaryCount == boundary.length)
+			boundary = Arrays.copyOf(boundary, boundaryCount * 2);
+		boundary[boundaryCount++] = segment;
+	}
+
+	/**
+	 * Fills the cells of the reached area and draws the boundary segments.
+	 */
+	public void draw(Graphics2D g, Graph graph, Dimension screen,
+			Location origin, double scale) {
+		int w = screen.width / CELL + 1, h = screen.height / CELL + 1;
+		if (overlay == null || overlay.getWidth() != w
+				|| overlay.getHeight() != h) {
+			overlay = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+			pixels = new int[w * h];
+		}
+		Arrays.fill(pixels, 0);
+
+		// a reached node's open edges to other reached nodes are inside the
+		// area.
+		if (reached.length != graph.nodeArray.length)
+			reached = new boolean[graph.nodeArray.length];
+		for (int i = 0; i < nodeCount; i++)
+			reached[nodes[i]] = true;
+		Adjacency out = graph.forward;
+		long[] closed = graph.closedSegments();
+		int fill = FILL.getRGB();
+		double cellScale = scale / CELL;
+		for (int i = 0; i < nodeCount; i++) {
+			Location a = graph.nodeArray[nodes[i]].location;
+			for (int e = out.start(nodes[i]); e < out.end(nodes[i]); e++) {
+				if (!reached[out.target[e]]
+						|| Graph.isClosed(closed, out.segment[e]))
+					continue;
+				Location b = graph.nodeArray[out.target[e]].location;
+				line((a.x - origin.x) * cellScale, (origin.y - a.y)
+						* cellScale, (b.x - origin.x) * cellScale,
+						(origin.y - b.y) * cellScale, w, h, fill);
+			}
+		}
+		for (int i = 0; i < nodeCount; i++)
+			reached[nodes[i]] = false;
+		overlay.setRGB(0, 0, w, h, pixels, 0, w);
+		g.drawImage(overlay, 0, 0, w * CELL, h * CELL, null);
+
+		g.setColor(BOUNDARY);
+		for (int i = 0; i < boundaryCount; i++)
+			graph.segmentArray[boundary[i]].draw(g, origin, scale);
+	}
+
+	/**
+	 * Sets the cells along a line, given in cell coordinates. The line is
+	 * clipped to the screen first, so however far it runs off it, it costs no
+	 * more than a line across the screen.
+	 */
+	private void line(double x0, double y0, double x1, double y1, int w,
+			int h, int colour) {
+		// clip the line to [0, w] x [0, h] by narrowing the range [t0, t1]
+		// of the parameter along it (Liang-Barsky).
+		double dx = x1 - x0, dy = y1 - y0;
+		double[] t = range;
+		t[0] = 0;
+		t[1] = 1;
+		if (!clip(-dx, x0, t) || !clip(dx, w - x0, t) || !clip(-dy, y0, t)
+				|| !clip(dy, h - y0, t))
+			return;
+		x1 = x0 + t[1] * dx;
+		y1 = y0 + t[1] * dy;
+		x0 += t[0] * dx;
+		y0 += t[0] * dy;
+
+		int steps = (int) Math.ceil(Math.max(Math.abs(x1 - x0),
+				Math.abs(y1 - y0))) + 1;
+		for (int i = 0; i <= steps; i++) {
+			int x = (int) Math.floor(x0 + (x1 - x0) * i / steps);
+			int y = (int) Math.floor(y0 + (y1 - y0) * i / steps);
+			if (x >= 0 && y >= 0 && x < w && y < h)
+				pixels[y * w + x] = colour;
+		}
+	}
+
+	/**
+	 * Narrows t to the part of a line inside one edge of the screen, where p
+	 * is how fast the line heads out across the edge and q how far inside it
+	 * the line starts. Returns false if none of the line is inside.
+	 */
+	private static boolean clip(double p, double q, double[] t) {
+		if (p == 0)
+			return q >= 0;
+		double r = q / p;
+		if (p < 0)
+			t[0] = Math.max(t[0], r);
+		else
+			t[1] = Math.min(t[1], r);
+		return t[0] <= t[1];
+	}
+}
+
+// code for COMP261 assignments
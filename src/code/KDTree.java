@@ -0,0 +1,231 @@
+package code;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A static 2-d tree over a set of points, each identified by an int (for the
+ * graph, that's the dense index of a node). It's built once, stored
+ * implicitly in arrays with the median of every range at its middle, and
+ * answers nearest and k-nearest neighbour queries in logarithmic time, as well
+ * as finding all the points in a rectangle.
+ */
+public class KDTree {
+
+	// the points, reordered into tree order: the splitting point of the range
+	// [lo, hi) is at (lo + hi) / 2, and ranges split on x at even depths and
+	// on y at odd ones.
+	private final int[] ids;
+	private final double[] xs, ys;
+
+	/**
+	 * Builds a tree over the points (x[i], y[i]), which get the ids i.
+	 */
+	public KDTree(double[] x, double[] y) {
+		int n = x.length;
+		this.ids = new int[n];
+		for (int i = 0; i < n; i++)
+			ids[i] = i;
+		this.xs = Arrays.copyOf(x, n);
+		this.ys = Arrays.copyOf(y, n);
+		build(0, n, 0);
+	}
+
+	private void build(int lo, int hi, int depth) {
+		if (hi - lo <= 1)
+			return;
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi, mid, depth % 2 == 0 ? xs : ys);
+		build(lo, mid, depth + 1);
+		build(mid + 1, hi, depth + 1);
+	}
+
+	/**
+	 * Rearranges [lo, hi) so that the point at k has the k'th smallest key,
+	 * with nothing bigger before it and nothing smaller after it.
+	 */
+	private void select(int lo, int hi, int k, double[] key) {
+		hi--;
+		while (lo < hi) {
+			double pivot = key[(lo + hi) >>> 1];
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (key[i] < pivot)
+					i++;
+				while (key[j] > pivot)
+					j--;
+				if (i <= j)
+					swap(i++, j--);
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		double t = xs[i];
+		xs[i] = xs[j];
+		xs[j] = t;
+		t = ys[i];
+		ys[i] = ys[j];
+		ys[j] = t;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the id of the point nearest to (x, y), or -1 if the tree is
+	 * empty.
+	 */
+	public int nearest(double x, double y) {
+		int[] found = nearest(x, y, 1);
+		return found.length == 0 ? -1 : found[0];
+	}
+
+	/**
+	 * Returns the ids of the k points nearest to (x, y), nearest first.
+	 */
+	public int[] nearest(double x, double y, int k) {
+		Neighbours best = new Neighbours(Math.min(k, ids.length));
+		if (best.capacity > 0)
+			search(0, ids.length, 0, x, y, best);
+		return best.sorted();
+	}
+
+	private void search(int lo, int hi, int depth, double x, double y,
+			Neighbours best) {
+		if (lo >= hi)
+			return;
+		int mid = (lo + hi) >>> 1;
+		double dx = xs[mid] - x, dy = ys[mid] - y;
+		best.offer(ids[mid], dx * dx + dy * dy);
+
+		// go down the side the query is on first, and only look at the other
+		// side if the splitting line is closer than the worst point we have.
+		double diff = depth % 2 == 0 ? x - xs[mid] : y - ys[mid];
+		if (diff < 0) {
+			search(lo, mid, depth + 1, x, y, best);
+			if (diff * diff < best.bound())
+				search(mid + 1, hi, depth + 1, x, y, best);
+		} else {
+			search(mid + 1, hi, depth + 1, x, y, best);
+			if (diff * diff < best.bound())
+				search(lo, mid, depth + 1, x, y, best);
+		}
+	}
+
+	/**
+	 * Calls the visitor with the id of every point inside the given
+	 * rectangle.
+	 */
+	public void range(double x0, double y0, double x1, double y1,
+			IntConsumer visitor) {
+		range(0, ids.length, 0, x0, y0, x1, y1, visitor);
+	}
+
+	private void range(int lo, int hi, int depth, double x0, double y0,
+			double x1, double y1, IntConsumer visitor) {
+		if (lo >= hi)
+			return;
+		int mid = (lo + hi) >>> 1;
+		double x = xs[mid], y = ys[mid];
+		if (x >= x0 && x <= x1 && y >= y0 && y <= y1)
+			visitor.accept(ids[mid]);
+
+		double split = depth % 2 == 0 ? x : y;
+		double min = depth % 2 == 0 ? x0 : y0, max = depth % 2 == 0 ? x1 : y1;
+		if (min <= split)
+			range(lo, mid, depth + 1, x0, y0, x1, y1, visitor);
+		if (max >= split)
+			range(mid + 1, hi, depth + 1, x0, y0, x1, y1, visitor);
+	}
+
+	/**
+	 * The best k points found so far, kept as a max-heap on squared distance
+	 * so the worst of them is always at the top.
+	 */
+	private static class Neighbours {
+		final int capacity;
+		final int[] ids;
+		final double[] dist;
+		int size;
+
+		Neighbours(int capacity) {
+			this.capacity = capacity;
+			this.ids = new int[capacity];
+			this.dist = new double[capacity];
+		}
+
+		double bound() {
+			return size < capacity ? Double.POSITIVE_INFINITY : dist[0];
+		}
+
+		void offer(int id, double d) {
+			if (size < capacity) {
+				// sift the new point up from the bottom.
+				int i = size++;
+				while (i > 0 && dist[(i - 1) / 2] < d) {
+					ids[i] = ids[(i - 1) / 2];
+					dist[i] = dist[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				ids[i] = id;
+				dist[i] = d;
+			} else if (d < dist[0]) {
+				// replace the worst point, and sift down.
+				int i = 0;
+				while (true) {
+					int c = 2 * i + 1;
+					if (c >= size)
+						break;
+					if (c + 1 < size && dist[c + 1] > dist[c])
+						c++;
+					if (dist[c] <= d)
+						break;
+					ids[i] = ids[c];
+					dist[i] = dist[c];
+					i = c;
+				}
+				ids[i] = id;
+				dist[i] = d;
+			}
+		}
+
+		int[] sorted() {
+			// pop the heap from the back, so the nearest ends up first.
+			int[] out = new int[size];
+			while (size > 0) {
+				out[size - 1] = ids[0];
+				int lastId = ids[--size];
+				double last = dist[size];
+				int i = 0;
+				while (true) {
+					int c = 2 * i + 1;
+					if (c >= size)
+						break;
+					if (c + 1 < size && dist[c + 1] > dist[c])
+						c++;
+					if (dist[c] <= last)
+						break;
+					ids[i] = ids[c];
+					dist[i] = dist[c];
+					i = c;
+				}
+				ids[i] = lastId;
+				dist[i] = last;
+			}
+			return out;
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,252 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Landmarks gives A* a much better lower bound on road distance than a
+ * straight line, which can't see harbours, rivers or motorways. A handful of
+ * landmark nodes are picked around the edge of the network, and the road
+ * distance from each landmark to every node and from every node back to it is
+ * worked out in advance. By the triangle inequality, for any landmark l,
+ *
+ * d(v, w) >= d(l, w) - d(l, v) and d(v, w) >= d(v, l) - d(w, l)
+ *
+ * and the best of these over the landmarks is the bound (the ALT heuristic).
+ *
+ * Landmarks are picked farthest-first by straight line distance, from the
+ * nodes in the biggest part of the network that can be got to and back, and
+ * then the forward and backward searches for all of them run at once. A query
+ * only uses the few landmarks that give the best bound between its two ends.
+ */
+public class Landmarks {
+
+	public static final int DEFAULT_COUNT = 16;
+	// how many landmarks a single query uses.
+	public static final int ACTIVE = 4;
+
+	// how many random nodes to try starting the selection from, to avoid
+	// starting in some small island of the one-way network.
+	private static final int SEED_TRIES = 8;
+
+	private final int count;
+	// the distances from each landmark to each node, and from each node to
+	// each landmark, with node v's landmarks together at v * count, so that
+	// bounding a node reads one run of memory. Unreachable is infinity.
+	private final double[] from, to;
+	// the landmark nodes, by dense node index.
+	private final int[] nodes;
+
+	private Landmarks(int count, double[] from, double[] to, int[] nodes) {
+		this.count = count;
+		this.from = from;
+		this.to = to;
+		this.nodes = nodes;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int node(int landmark) {
+		return nodes[landmark];
+	}
+
+	/**
+	 * Picks up to count landmarks and builds their distance tables, running
+	 * all the searches for them at once on the pool.
+	 */
+	public static Landmarks build(Graph graph, int count, ExecutorService pool) {
+		Adjacency out = graph.forward, in = graph.backward;
+		Segment[] segments = graph.segmentArray;
+		int n = graph.nodeArray.length;
+		count = Math.min(count, n);
+		double[] from = new double[n * count], to = new double[n * count];
+		if (count == 0)
+			return new Landmarks(0, from, to, new int[0]);
+
+		// the landmarks are picked from the nodes that can reach, and be
+		// reached from, whichever of a few random nodes has the most.
+		Random random = new Random(count);
+		int[] seeds = new int[SEED_TRIES];
+		for (int i = 0; i < seeds.length; i++)
+			seeds[i] = random.nextInt(n);
+		double[][] trips = searchAll(out, in, segments, seeds, pool);
+		boolean[] reachable = null;
+		int seed = -1, bestReach = -1;
+		for (int i = 0; i < seeds.length; i++) {
+			boolean[] both = new boolean[n];
+			int reach = 0;
+			for (int v = 0; v < n; v++) {
+				both[v] = trips[2 * i][v] + trips[2 * i + 1][v] < Double.POSITIVE_INFINITY;
+				if (both[v])
+					reach++;
+			}
+			if (reach > bestReach) {
+				bestReach = reach;
+				reachable = both;
+				seed = seeds[i];
+			}
+		}
+
+		int[] nodes = pick(graph, reachable, seed, count);
+		double[][] tables = searchAll(out, in, segments, nodes, pool);
+		for (int l = 0; l < count; l++) {
+			for (int v = 0; v < n; v++) {
+				from[v * count + l] = tables[2 * l][v];
+				to[v * count + l] = tables[2 * l + 1][v];
+			}
+		}
+		return new Landmarks(count, from, to, nodes);
+	}
+
+	/**
+	 * Picks count landmarks from the reachable nodes farthest-first by
+	 * straight line distance: the first is the farthest from the seed, and
+	 * each after that the farthest from all those picked so far. That puts
+	 * them around the edge of the network without needing their road
+	 * distances, so that the searches for them can all run at once.
+	 */
+	private static int[] pick(Graph graph, boolean[] reachable, int seed,
+			int count) {
+		Node[] nodeArray = graph.nodeArray;
+		int n = nodeArray.length;
+		double[] nearest = new double[n];
+		for (int v = 0; v < n; v++)
+			nearest[v] = reachable[v] ? nodeArray[v].location
+					.distance(nodeArray[seed].location) : -1;
+		int[] nodes = new int[count];
+		for (int l = 0; l < count; l++) {
+			int far = seed;
+			for (int v = 0; v < n; v++)
+				if (nearest[v] > nearest[far])
+					far = v;
+			nodes[l] = far;
+			Location at = nodeArray[far].location;
+			for (int v = 0; v < n; v++)
+				if (reachable[v])
+					nearest[v] = Math.min(nearest[v],
+							nodeArray[v].location.distance(at));
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns the distances from each of the sources and to each of them, at
+	 * 2 * i and 2 * i + 1 for source i, all searched at once on the pool.
+	 */
+	private static double[][] searchAll(final Adjacency out,
+			final Adjacency in, final Segment[] segments, int[] sources,
+			ExecutorService pool) {
+		List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+		for (final int source : sources) {
+			for (final Adjacency adj : new Adjacency[] { out, in }) {
+				futures.add(pool.submit(new Callable<double[]>() {
+					public double[] call() {
+						return distances(adj, segments, source);
+					}
+				}));
+			}
+		}
+		try {
+			double[][] dist = new double[futures.size()][];
+			for (int i = 0; i < dist.length; i++)
+				dist[i] = futures.get(i).get();
+			return dist;
+		} catch (ExecutionException e) {
+			throw new RuntimeException("landmark search failed.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("landmark search interrupted.", e);
+		}
+	}
+
+	/**
+	 * Dijkstra's algorithm from a node over every edge in the adjacency. The
+	 * lengths are taken from the segments, closed or not, so the bounds still
+	 * hold when closed segments are reopened.
+	 */
+	private static double[] distances(Adjacency adj, Segment[] segments,
+			int source) {
+		int n = adj.offset.length - 1;
+		double[] dist = new double[n];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		IndexedHeap fringe = new IndexedHeap(n);
+		dist[source] = 0;
+		fringe.push(source, 0);
+		while (!fringe.isEmpty()) {
+			int u = fringe.pop();
+			for (int e = adj.start(u); e < adj.end(u); e++) {
+				int v = adj.target[e];
+				double cost = dist[u] + segments[adj.segment[e]].length;
+				if (cost < dist[v]) {
+					dist[v] = cost;
+					fringe.push(v, cost);
+				}
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Fills active with the landmarks that give the best bound on the distance
+	 * from s to t, best first, and returns how many there are.
+	 */
+	public int select(int s, int t, int[] active) {
+		int size = Math.min(ACTIVE, Math.min(count, active.length));
+		int found = 0;
+		for (int l = 0; l < count; l++) {
+			double bound = bound(s, t, l);
+			// insert into the sorted best few, dropping the worst.
+			int i;
+			if (found < size)
+				i = found++;
+			else if (bound > bound(s, t, active[size - 1]))
+				i = size - 1;
+			else
+				continue;
+			while (i > 0 && bound(s, t, active[i - 1]) < bound) {
+				active[i] = active[i - 1];
+				i--;
+			}
+			active[i] = l;
+		}
+		return found;
+	}
+
+	/**
+	 * Returns a lower bound on the distance from v to w, using the first
+	 * activeCount landmarks in active.
+	 */
+	public double lowerBound(int v, int w, int[] active, int activeCount) {
+		double best = 0;
+		for (int i = 0; i < activeCount; i++)
+			best = Math.max(best, bound(v, w, active[i]));
+		return best;
+	}
+
+	/**
+	 * The bound on the distance from v to w that landmark l gives. A
+	 * difference involving an unreachable node tells us nothing useful, so
+	 * only finite ones count.
+	 */
+	private double bound(int v, int w, int l) {
+		int at = v * count + l, wat = w * count + l;
+		double best = 0;
+		double ahead = from[wat] - from[at];
+		if (ahead > best && ahead < Double.POSITIVE_INFINITY)
+			best = ahead;
+		double behind = to[at] - to[wat];
+		if (behind > best && behind < Double.POSITIVE_INFINITY)
+			best = behind;
+		return best;
+	}
+}
+
+// code for COMP261 assignments
@@ -8,6 +8,9 @@ import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.util.*;
+import java.util.function.IntConsumer;
+
+import javax.swing.JOptionPane;
 
 /**
  * This is the main class for the mapping program. It extends the GUI abstract
@@ -21,6 +24,12 @@ public class Mapper extends GUI {
 	public static final Color SEGMENT_COLOUR = new Color(130, 130, 130);
 	public static final Color HIGHLIGHT_COLOUR = new Color(255, 219, 77);
 	public static final Color HIGHLIGHT_PATH_COLOUR = new Color(102, 255, 102);
+	public static final Color BACKGROUND_COLOUR = new Color(238, 238, 238);
+	public static final Color WATER_COLOUR = new Color(170, 211, 223);
+	public static final Color PARK_COLOUR = new Color(200, 228, 188);
+	public static final Color URBAN_COLOUR = new Color(230, 226, 220);
+	public static final Color LAND_USE_COLOUR = new Color(224, 218, 206);
+	public static final Color BUILDING_COLOUR = new Color(212, 206, 200);
 
 	// these two constants define the size of the node squares at different zoom
 	// levels; the equation used is node size = NODE_INTERCEPT + NODE_GRADIENT *
@@ -38,6 +47,12 @@ public class Mapper extends GUI {
 	// how far away from a node you can click before it isn't counted.
 	public static final double MAX_CLICKED_DISTANCE = 0.15;
 
+	// how much memory the cached map tiles can take up.
+	public static final long TILE_CACHE_BYTES = 64L << 20;
+	// how many routes the route cache keeps, and how much memory they take.
+	public static final int ROUTE_CACHE_ENTRIES = 10000;
+	public static final long ROUTE_CACHE_BYTES = 16L << 20;
+
 	// these two define the 'view' of the program, ie. where you're looking and
 	// how zoomed in you are.
 	public static Location origin;
@@ -51,11 +66,21 @@ public class Mapper extends GUI {
 
 	//for Articulation Points
 	public static boolean activateArtPts = false;
-	public static Collection<Node> articulationPoints;
+	public static Biconnectivity.WeakPoints articulationPoints;
 
 	// our data structures.
 	private Graph graph;
 	private Trie trie;
+	private TileRenderer tiles;
+	private FrameRenderer frames;
+	private Router router;
+	private RouteCache routes;
+
+	// which search the AStar button uses, and the last route it found.
+	private Router.Mode routeMode = Router.Mode.BIDIRECTIONAL;
+	private Router.Route lastRoute;
+	// the last area shown by the Isochrone button, reused for the next one.
+	private final Isochrone reach = new Isochrone();
 
 	@Override
 	protected void astar() {
@@ -73,19 +98,82 @@ public class Mapper extends GUI {
 		}
 	}
 
+	@Override
+	protected void routeMode() {
+		Router.Mode[] modes = Router.Mode.values();
+		routeMode = modes[(routeMode.ordinal() + 1) % modes.length];
+		getTextOutputArea().setText("search mode: " + routeMode + "\n");
+
+		// if there's a start and goal, run every search so they can be
+		// compared.
+		if (router != null && startNode != null && goalNode != null) {
+			for (Router.Mode mode : Router.Mode.values()) {
+				Router.Route route = router.route(startNode, goalNode, mode);
+				getTextOutputArea().append(String.format(
+						"%s: %.3f km, %d nodes expanded in %.2f ms\n", mode,
+						route.length, route.expanded, route.millis()));
+			}
+		}
+	}
+
+	// shows everything within a distance, or a number of minutes, of the
+	// selected node, or hides it again if it's showing.
+	@Override
+	protected void isochrone() {
+		if (graph == null)
+			return;
+		if (graph.isochrone != null) {
+			graph.isochrone = null;
+			return;
+		}
+		if (startNode == null) {
+			getTextOutputArea().setText("select a node to measure from first\n");
+			return;
+		}
+
+		String answer = JOptionPane.showInputDialog(null,
+				"Reachable within how many km (or minutes, like \"10 min\")?",
+				"5");
+		if (answer == null)
+			return;
+		answer = answer.trim().toLowerCase();
+		Router.Profile profile = Router.Profile.DISTANCE;
+		double limit;
+		try {
+			if (answer.endsWith("min")) {
+				profile = Router.Profile.TIME;
+				limit = Double.parseDouble(answer.substring(0,
+						answer.length() - 3).trim()) / 60;
+			} else {
+				limit = Double.parseDouble(answer.replace("km", "").trim());
+			}
+		} catch (NumberFormatException e) {
+			getTextOutputArea().setText("not a distance or time: " + answer + "\n");
+			return;
+		}
+
+		long begin = System.nanoTime();
+		graph.isochrone = router.isochrone(startNode, limit, profile, reach);
+		getTextOutputArea().setText(String.format(
+				"%d nodes within %s of node %d, %d segments leading out, in %.2f ms\n",
+				reach.nodeCount, answer, startNode.nodeID, reach.boundaryCount,
+				(System.nanoTime() - begin) / 1e6));
+	}
+
+	// shows the articulation points of the whole graph, which are only
+	// worked out the first time, or hides them again.
 	@Override
 	protected void artPts() {
 		if(activateArtPts){
 			activateArtPts = false;
-			startNode = null;
 			articulationPoints = null;
-		}else{
+		}else if(graph != null){
 			activateArtPts = true;
-			if(startNode != null){
-				artPtsHelper(startNode);
-			}
+			long begin = System.nanoTime();
+			articulationPoints = graph.weakPoints();
+			getTextOutputArea().setText(String.format("%s, in %.2f ms\n",
+					articulationPoints, (System.nanoTime() - begin) / 1e6));
 		}
-
 	}
 
 	@Override
@@ -96,12 +184,21 @@ public class Mapper extends GUI {
 		goalNode = null;
 		articulationPoints = null;
 		activateArtPts = false;
+		if (graph != null)
+			graph.isochrone = null;
 	}
 
 	@Override
 	protected void redraw(Graphics g) {
 		if (graph != null){
-			graph.draw(g, getDrawingAreaDimension(), origin, scale);
+			// the base map is drawn on the render thread. until the frame for
+			// this view is ready, we show the last one moved into place, and
+			// everything that changes as the user clicks around goes on top.
+			frames.request(getDrawingAreaDimension(), origin, scale);
+			FrameRenderer.Frame frame = frames.latest();
+			if (frame != null)
+				frame.draw(g, origin, scale);
+			graph.drawOverlays(g, getDrawingAreaDimension(), origin, scale);
 		}
 		if(startNode!=null){
 			g.setColor(Color.YELLOW);
@@ -118,14 +215,36 @@ public class Mapper extends GUI {
 			}
 		}
 		if(articulationPoints != null && activateArtPts){
-			g.setColor(Color.MAGENTA);
-			for(Node n: articulationPoints){
-				n.draw(g, getDrawingAreaDimension(), origin, scale);
-			}
+			drawArticulationPoints(g);
 		}
 
 	}
 
+	// draws the bridges and articulation points that are on screen, as they
+	// are after the latest closures.
+	private void drawArticulationPoints(Graphics g) {
+		final Graphics gr = g;
+		final Dimension area = getDrawingAreaDimension();
+		final Biconnectivity.WeakPoints points = graph.weakPoints();
+		double x0 = origin.x, y1 = origin.y;
+		double x1 = x0 + area.width / scale, y0 = y1 - area.height / scale;
+		g.setColor(Color.MAGENTA);
+		graph.segmentIndex.query(x0, y0, x1, y1, new IntConsumer() {
+			public void accept(int i) {
+				Segment seg = graph.segmentArray[i];
+				if (points.isBridge(seg))
+					seg.draw(gr, origin, scale);
+			}
+		});
+		graph.nodeIndex.range(x0, y0, x1, y1, new IntConsumer() {
+			public void accept(int i) {
+				Node n = graph.nodeArray[i];
+				if (points.isArticulation(n))
+					n.draw(gr, area, origin, scale);
+			}
+		});
+	}
+
 	@Override
 	protected void onClick(MouseEvent e) {
 		if(startNode==null){
@@ -207,13 +326,37 @@ public class Mapper extends GUI {
 			scaleOrigin(false);
 			scale /= ZOOM_FACTOR;
 		}
+		// start on the new frame straight away, dropping any half drawn one.
+		if (frames != null)
+			frames.request(getDrawingAreaDimension(), origin, scale);
 	}
 
 
 	@Override
-	protected void onLoad(File nodes, File roads, File segments, File polygons) {
-		graph = new Graph(nodes, roads, segments, polygons);
+	protected void onLoad(File nodes, File roads, File segments,
+			File polygons, File restrictions) {
+		graph = new Graph(nodes, roads, segments, polygons, restrictions);
 		trie = new Trie(graph.roads.values());
+		router = new Router(graph);
+		routes = new RouteCache(graph, ROUTE_CACHE_ENTRIES, ROUTE_CACHE_BYTES);
+		// get the contraction hierarchy ready in the background, so the first
+		// hierarchy search doesn't have to wait for it.
+		final Graph loaded = graph;
+		Thread prepare = new Thread(new Runnable() {
+			public void run() {
+				loaded.hierarchy();
+			}
+		}, "hierarchy builder");
+		prepare.setDaemon(true);
+		prepare.start();
+		tiles = new TileRenderer(graph, TILE_CACHE_BYTES);
+		if (frames != null)
+			frames.shutdown();
+		frames = new FrameRenderer(tiles, new Runnable() {
+			public void run() {
+				redraw();
+			}
+		});
 		origin = new Location(-250, 250); // close enough
 		scale = 1;
 	}
@@ -242,16 +385,7 @@ public class Mapper extends GUI {
 	 */
 	private Node findNode(Point point) {
 		Location mousePlace = Location.newFromPoint(point, origin, scale);
-		Node closest = null;
-		double mindist = Double.POSITIVE_INFINITY;
-		for(Node node : graph.nodes.values()){
-			double dist = mousePlace.distance(node.location);
-			if(dist<mindist){
-				mindist = dist;
-				closest = node;
-			}
-		}
-		return closest;
+		return graph.findNearest(mousePlace);
 	}
 
 	/**
@@ -261,58 +395,11 @@ public class Mapper extends GUI {
 	 * @return Collection of segment that makes up the shortest path between two nodes
 	 */
 	public Collection<Segment> AStar(Node startNode, Node goalNode){
-		for(Node node : graph.nodes.values()){
-			node.visit(false);
-			node.pathFrom(null);
-		}
-		List<Segment> thePath = new ArrayList<Segment>();
-		PriorityQueue<AStar> fringe = new PriorityQueue<AStar>();
-		fringe.offer(new AStar(startNode, null, 0, startNode.heuristic(goalNode.getLoc())));
-
-		while(!fringe.isEmpty()){
-			AStar searchNode = fringe.poll(); //dequeue
-			Node current = searchNode.getStartNode();
-
-			if(!current.visited()) { //if not yet visited 
-				current.visit(true);
-				current.pathFrom(searchNode.getGoalNode());
-				current.cost(searchNode.getCostSoFar());
-				System.out.println("visited");
-				if(current == goalNode){
-					System.out.println("n == goalNode");
-					break;
-				}
-				for(Segment edge : current.getSegment()){
-					Node neigh = null;
-					if(current == edge.getStartNode()){
-						neigh = edge.getEndNode();
-					}
-					if(current == edge.getEndNode()){
-						neigh = edge.getStartNode();
-					}
-					if(!neigh.visited()){
-						double costToNeigh = searchNode.getCostSoFar() + edge.getLength();
-						double estTotal = costToNeigh + neigh.heuristic(goalNode.getLoc());
-						fringe.offer(new AStar(neigh,current,costToNeigh,estTotal));	
-					}
-				}
-			}
-		}
-		Node backTrack = goalNode;
-		System.out.println("backTrack");
-		while(backTrack != startNode ){
-			System.out.println("backTrack != startNode");
-			for(Segment s : backTrack.getSegment()){
-				if(s.getStartNode() == backTrack.getPathFrom() || s.getEndNode() == backTrack.getPathFrom()){
-					thePath.add(s);
-					backTrack = backTrack.getPathFrom();
-				}
-			}
-		}
-		Collections.reverse(thePath);
-		return thePath;
+		lastRoute = routes.route(router, startNode, goalNode, routeMode,
+				Router.Profile.DISTANCE);
+		return lastRoute.segments;
 	}
-	
+
 	/**
 	 * Shows the information of the shortest path and the paths that have went through
 	 */
@@ -320,6 +407,10 @@ public class Mapper extends GUI {
 		getTextOutputArea().setText("");
 		double totalLength = 0;
 		
+		if(lastRoute != null && !lastRoute.found()){
+			getTextOutputArea().append("no route from node " + startNode.nodeID
+					+ " to node " + goalNode.nodeID + "\n");
+		}
 		if(shortestPath != null){
 			for(Segment s: shortestPath){
 				Road r = s.getRoad();
@@ -328,102 +419,16 @@ public class Mapper extends GUI {
 				getTextOutputArea().append(streetName+": distance "+ (double)Math.round(s.getLength()*1000)/1000+" km\n");
 			}
 			getTextOutputArea().append("\nTotal distance of the path "+(double)Math.round(totalLength*1000)/1000+"km");
-		}
-	}
-
-	/**
-	 * Use A* algorithm to find the shortest path between two nodes.
-	 * @param start	The start node of the articulation point
-	 */
-	public void artPtsHelper(Node start){
-		for(Node node : graph.nodes.values()){
-			node.visit(false);
-			node.setDepth(Double.POSITIVE_INFINITY);
-		}
-		articulationPoints = new HashSet<Node>();
-		int numSubtrees = 0;
-
-		start.setDepth(0);
-		for(Node neighbour : start.getNeighNode()){
-			if(neighbour.getDepth() == Double.POSITIVE_INFINITY){
-				//recArtPts(neighbour,1,start);
-				iterArtPts(neighbour, start);
-				numSubtrees++;
-			}
-			if(numSubtrees > 1){
-				articulationPoints.add(start);
+			if(lastRoute != null){
+				if(lastRoute.cached)
+					getTextOutputArea().append(String.format("\n%s search: cached, %.2f ms",
+							routeMode, lastRoute.millis()));
+				else
+					getTextOutputArea().append(String.format("\n%s search: %d nodes expanded in %.2f ms",
+							routeMode, lastRoute.expanded, lastRoute.millis()));
+				getTextOutputArea().append("\nroute cache: " + routes);
 			}
 		}
-	}
-	
-	/**
-	 * Use A* algorithm to find the shortest path between two nodes.
-	 * @param node, Node
-	 * @param double,  depth
-	 * @param fromNode, Node
-	 * @return double, that return the reach back
-	 */
-	public double recArtPts(Node node, double depth, Node fromNode){
-		node.setDepth(depth);
-		double reachBack = depth;
-
-		for(Node neigh : node.getNeighNode()){
-			if(neigh == fromNode) continue;
-			if(neigh.getDepth() < Double.POSITIVE_INFINITY){
-				reachBack = Math.min(reachBack, neigh.getDepth());
-			}
-			else{
-				double childReach = recArtPts(neigh, depth+1, node);
-				reachBack = Math.min(childReach, reachBack);
-				if(childReach >= depth){
-					articulationPoints.add(node);
-				}
-				
-			}
-		}
-		return reachBack;
-	}
-	
-	
-	public void iterArtPts(Node firstNode, Node root){
-		Stack<ArtPtsDFS> fringe = new Stack<ArtPtsDFS>();
-		fringe.push(new ArtPtsDFS(firstNode, 1, new ArtPtsDFS(root, 0, null)));
-		
-		while(!fringe.isEmpty()){
-			ArtPtsDFS elem = fringe.peek();
-			Node node = elem.getNode();
-			
-			if(elem.getChildren() == null){
-				node.setDepth(elem.getDepth());
-				elem.setReachBack(elem.getDepth());
-				elem.setChildren();
-				for(Node neigh : node.getNeighNode()){
-					if(neigh != elem.getParent().getNode()){
-						elem.getChildren().push(neigh);
-					}
-				}
-			}
-			else if(!elem.getChildren().isEmpty()){
-				Node child = elem.getChildren().pop();
-				if(child.getDepth() < Double.POSITIVE_INFINITY){
-					elem.setReachBack((double)Math.min(elem.getReachBack(), child.getDepth()));
-				}else{
-					fringe.push(new ArtPtsDFS(child, node.getDepth()+1, elem));
-				}
-			}
-			else{
-				if(node != firstNode){
-					if(elem.getReachBack() >= elem.getParent().getDepth()){
-						articulationPoints.add(elem.getParent().getNode());
-					}
-					elem.getParent().setReachBack((double)Math.min(elem.getParent().getReachBack(), elem.getReachBack()));
-				}
-				fringe.pop();
-			}
-		}
-		
-		
-		
 	}
 
 	public static void main(String[] args) {
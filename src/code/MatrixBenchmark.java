@@ -0,0 +1,75 @@
+package code;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times the distance matrix between random sets of nodes with ForkJoinPools
+ * of 1, 2, 4 ... threads up to the number of cores, to show how throughput
+ * scales. Run it with the data directory, and optionally the number of
+ * sources and targets (default 200):
+ *
+ * <pre>
+ * java code.MatrixBenchmark data/large 300
+ * </pre>
+ */
+public class MatrixBenchmark {
+
+	// runs per thread count, of which the fastest is reported.
+	private static final int RUNS = 3;
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("usage: MatrixBenchmark <data directory> [size]");
+			System.exit(1);
+		}
+		File dir = new File(args[0]);
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		Graph graph = new Graph(new File(dir, "nodeID-lat-lon.tab"), new File(
+				dir, "roadID-roadInfo.tab"), new File(dir,
+				"roadSeg-roadID-length-nodeID-nodeID-coords.tab"), null, null);
+		int n = graph.nodeArray.length;
+		Random random = new Random(size);
+		int[] sources = new int[size], targets = new int[size];
+		for (int i = 0; i < size; i++) {
+			sources[i] = random.nextInt(n);
+			targets[i] = random.nextInt(n);
+		}
+		DistanceMatrix matrix = new DistanceMatrix(graph);
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d x %d matrix on %d nodes, %d cores%n", size,
+				size, n, cores);
+		double[] expected = null;
+		double single = 0;
+		for (int threads = 1;; threads = Math.min(threads * 2, cores)) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			double[] result = matrix.compute(sources, targets, pool); // warm up
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < RUNS; run++) {
+				long begin = System.nanoTime();
+				result = matrix.compute(sources, targets, pool);
+				best = Math.min(best, System.nanoTime() - begin);
+			}
+			pool.shutdown();
+
+			if (expected == null)
+				expected = result;
+			else if (!Arrays.equals(expected, result))
+				System.out.println("  results differ from 1 thread!");
+			double seconds = best / 1e9;
+			if (threads == 1)
+				single = seconds;
+			System.out.printf(
+					"%2d threads: %8.1f ms, %8.0f rows/s, speedup %.2f%n",
+					threads, seconds * 1e3, size / seconds, single / seconds);
+			if (threads == cores)
+				break;
+		}
+	}
+}
+
+// code for COMP261 assignments
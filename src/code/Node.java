@@ -6,14 +6,14 @@ import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Set;
 
 
 /**
  * Node represents an intersection in the road graph. It stores its ID and its
- * location, as well as all the segments that it connects to. It knows how to
- * draw itself, and has an informative toString method.
+ * location, and finds the segments it connects to through the graph's
+ * adjacency arrays. It knows how to draw itself, and has an informative
+ * toString method.
  * 
  * @author Tony Butler-Yeoman
  */
@@ -22,45 +22,53 @@ public class Node {
 
 	public final int nodeID;
 	public final Location location;
-	public final Collection<Segment> segments;
+	final Graph graph;
+	// dense index of this node in the graph's arrays, assigned once all the
+	// segments have been parsed.
+	int index = -1;
 
-	//For A*
-	private boolean visited;
-	private Node pathFrom;
-	private double cost;
 
-	//For Articulation Points
-	private double depth;
-
-
-	public Node(int nodeID, double lat, double lon) {
+	public Node(Graph graph, int nodeID, double lat, double lon) {
+		this.graph = graph;
 		this.nodeID = nodeID;
 		this.location = Location.newFromLatLon(lat, lon);
-		this.segments = new HashSet<Segment>();
 	}
 
-	public void addSegment(Segment seg) {
-		segments.add(seg);
+	Node(Graph graph, int nodeID, Location location) {
+		this.graph = graph;
+		this.nodeID = nodeID;
+		this.location = location;
 	}
 
+	/**
+	 * Returns all the segments that leave or arrive at this node, each once.
+	 */
 	public Collection<Segment> getSegment(){
-		return this.segments;
+		int degree = graph.degree(this);
+		Collection<Segment> segs = new ArrayList<Segment>(degree);
+		for(int k = 0; k < degree; k++){
+			segs.add(graph.segment(this, k));
+		}
+		return segs;
 	}
 
 	public void draw(Graphics g, Dimension area, Location origin, double scale) {
 		Point p = location.asPoint(origin, scale);
+		int size = (int) (Mapper.NODE_GRADIENT * Math.log(scale) + Mapper.NODE_INTERCEPT);
 
-		// for efficiency, don't render nodes that are off-screen.
-		if (p.x < 0 || p.x > area.width || p.y < 0 || p.y > area.height)
+		// for efficiency, don't render nodes that are off-screen. nodes just
+		// over the edge still poke onto it, which matters when the map is
+		// drawn in tiles.
+		if (p.x < -size || p.x > area.width + size || p.y < -size
+				|| p.y > area.height + size)
 			return;
 
-		int size = (int) (Mapper.NODE_GRADIENT * Math.log(scale) + Mapper.NODE_INTERCEPT);
 		g.fillRect(p.x - size / 2, p.y - size / 2, size, size);
 	}
 
 	public String toString() {
 		Set<String> edges = new HashSet<String>();
-		for (Segment s : segments) {
+		for (Segment s : getSegment()) {
 			if (!edges.contains(s.road.name))
 				edges.add(s.road.name);
 		}
@@ -76,50 +84,12 @@ public class Node {
 		return this.location;
 	}
 
-	public double heuristic(Location otherLoc){
-		return this.location.distance(otherLoc);
-	}
-
-	public boolean visited(){
-		return this.visited;
-	}
-
-	public boolean visit(boolean visited){
-		return this.visited = visited;
-	}
-
-	public void pathFrom(Node from){
-		this.pathFrom = from;
-	}
-
-	public void cost(double costToHere){
-		this.cost = costToHere;
-	}
-
-	public Node getPathFrom(){
-		return this.pathFrom;
-	}
-
-	public double getCost(){
-		return this.cost;
-	}
-
-	public double getDepth(){
-		return this.depth;
-	}
-
-	public void setDepth(double d){
-		this.depth = d;
-	}
-
 	public Collection<Node> getNeighNode(){
-		Collection<Node> neigh = new ArrayList<Node>();
+		int degree = graph.degree(this);
+		Collection<Node> neigh = new ArrayList<Node>(degree);
 
-		for(Segment s : this.segments){
-			neigh.add(s.getStartNode());
-		}
-		for(Segment s : this.segments){
-			neigh.add(s.getEndNode());
+		for(int k = 0; k < degree; k++){
+			neigh.add(graph.neighbour(this, k));
 		}
 		return neigh;
 	}
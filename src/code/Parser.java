@@ -1,51 +1,54 @@
 package code;
 
 
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
- * This utility class provides three static methods for parsing each of the
- * three files we're interested in, and returning the relevant data structure.
- * Internally it uses BufferedReaders instead of Scanners to read in the files,
- * as Scanners are pathetically slow.
+ * This utility class provides static methods for parsing each of the files
+ * we're interested in, and returning the relevant data structure. Internally
+ * it uses a Tokenizer to read numbers straight out of the bytes of the files,
+ * as Scanners are pathetically slow and even String.split makes a lot of
+ * garbage. The node and segment files can also be parsed in parallel,
+ * in ranges of lines on a thread pool.
  * 
  * @author Tony Butler-Yeoman
  */
 public class Parser {
-	
-	
+
+	// how many ranges each thread gets, so a slow range doesn't leave the
+	// other threads idle, and the smallest range worth handing to a thread.
+	private static final int CHUNKS_PER_THREAD = 4;
+	private static final int MIN_CHUNK_BYTES = 1 << 16;
+
+	/**
+	 * Parses the node file on this thread. The parallel parse is checked
+	 * against this.
+	 */
 	public static Map<Integer, Node> parseNodes(File nodes, Graph graph) {
 		Map<Integer, Node> map = new HashMap<Integer, Node>();
 
 		try {
-			// make a reader
-			BufferedReader br = new BufferedReader(new FileReader(nodes));
-			String line;
+			// make a tokenizer
+			Tokenizer tokens = new Tokenizer(new FileInputStream(nodes));
 
 			// read in each line of the file
-			while ((line = br.readLine()) != null) {
-				// tokenise the line by splitting it at the tabs.
-				String[] tokens = line.split("[\t]+");
-
-				// process the tokens
-				int nodeID = asInt(tokens[0]);
-				double lat = asDouble(tokens[1]);
-				double lon = asDouble(tokens[2]);
-
-				Node node = new Node(nodeID, lat, lon);
-				map.put(nodeID, node);
+			while (tokens.nextLine()) {
+				Node node = parseNode(tokens, graph);
+				map.put(node.nodeID, node);
 			}
-
-			br.close();
 		} catch (IOException e) {
 			throw new RuntimeException("file reading failed.");
 		}
@@ -57,30 +60,25 @@ public class Parser {
 		Map<Integer, Road> map = new HashMap<Integer, Road>();
 
 		try {
-			BufferedReader br = new BufferedReader(new FileReader(roads));
-			br.readLine(); // throw away the top line of the file.
-			String line;
-
-			while ((line = br.readLine()) != null) {
-				String[] tokens = line.split("[\t]+");
-
-				int roadID = asInt(tokens[0]);
-				int type = asInt(tokens[1]);
-				String label = tokens[2];
-				String city = tokens[3];
-				int oneway = asInt(tokens[4]);
-				int speed = asInt(tokens[5]);
-				int roadclass = asInt(tokens[6]);
-				int notforcar = asInt(tokens[7]);
-				int notforpede = asInt(tokens[8]);
-				int notforbicy = asInt(tokens[8]);
+			Tokenizer tokens = new Tokenizer(new FileInputStream(roads));
+			tokens.nextLine(); // throw away the top line of the file.
+
+			while (tokens.nextLine()) {
+				int roadID = tokens.nextInt();
+				int type = tokens.nextInt();
+				String label = tokens.nextString();
+				String city = tokens.nextString();
+				int oneway = tokens.nextInt();
+				int speed = tokens.nextInt();
+				int roadclass = tokens.nextInt();
+				int notforcar = tokens.nextInt();
+				int notforpede = tokens.nextInt();
+				int notforbicy = tokens.nextInt();
 
 				Road road = new Road(roadID, type, label, city, oneway, speed,
 						roadclass, notforcar, notforpede, notforbicy);
 				map.put(roadID, road);
 			}
-
-			br.close();
 		} catch (IOException e) {
 			throw new RuntimeException("file reading failed.");
 		}
@@ -88,53 +86,328 @@ public class Parser {
 		return map;
 	}
 
+	/**
+	 * Parses the segment file on this thread, returning the segments and
+	 * putting their shapes into the graph's Geometry. The parallel parse is
+	 * checked against this.
+	 */
 	public static Collection<Segment> parseSegments(File segments, Graph graph) {
-		Set<Segment> set = new HashSet<Segment>();
+		SegmentChunk chunk = new SegmentChunk();
 
 		try {
-			BufferedReader br = new BufferedReader(new FileReader(segments));
-			br.readLine(); // throw away the top line of the file.
-			String line;
-
-			while ((line = br.readLine()) != null) {
-				String[] tokens = line.split("[\t]+");
-
-				int roadID = asInt(tokens[0]);
-				double length = asDouble(tokens[1]);
-				int node1ID = asInt(tokens[2]);
-				int node2ID = asInt(tokens[3]);
-
-				double[] coords = new double[tokens.length - 4];
-				for (int i = 4; i < tokens.length; i++)
-					coords[i - 4] = asDouble(tokens[i]);
-				
-				Segment segment = new Segment(graph, roadID, length, node1ID,
-						node2ID, coords);
-				
-				if(!segment.road.oneWay()){
-					Segment seg = new Segment(graph, roadID, length, node2ID, node1ID, coords);	
-				
-					set.add(seg);
-				}else{
-					set.add(segment);
+			Tokenizer tokens = new Tokenizer(new FileInputStream(segments));
+			tokens.nextLine(); // throw away the top line of the file.
+			chunk.parse(tokens, graph);
+		} catch (IOException e) {
+			throw new RuntimeException("file reading failed.");
+		}
+
+		chunk.geometry.trim();
+		graph.geometry = chunk.geometry;
+		return chunk.segments;
+	}
+
+	/**
+	 * Parses the polygon file, a line at a time. Each polygon is a block
+	 * like this, where there may be several Data0 lines (the first is the
+	 * outline and the rest are holes), and other lines we don't use:
+	 * 
+	 * <pre>
+	 * [POLYGON]
+	 * Type=0x3e
+	 * EndLevel=3
+	 * Data0=(-36.78826,174.62689),(-36.78843,174.62620),...
+	 * [END]
+	 * </pre>
+	 */
+	public static PolygonLayer parsePolygons(File polygons) {
+		PolygonLayer layer = new PolygonLayer();
+		double[] coords = new double[64];
+
+		try {
+			Tokenizer tokens = new Tokenizer(new FileInputStream(polygons));
+			int type = 0, endLevel = 0, rings = 0;
+
+			while (tokens.nextLine()) {
+				if (tokens.skip("[POLYGON]")) {
+					type = endLevel = rings = 0;
+				} else if (tokens.skip("Type=")) {
+					type = Integer.decode(tokens.rest());
+				} else if (tokens.skip("EndLevel=")) {
+					endLevel = Integer.parseInt(tokens.rest());
+				} else if (tokens.skip("Data0=")) {
+					int count = 0;
+					while (tokens.skip("(")) {
+						if (count + 2 > coords.length)
+							coords = Arrays.copyOf(coords, coords.length * 2);
+						coords[count++] = tokens.nextDouble(',');
+						coords[count++] = tokens.nextDouble(')');
+						tokens.skip(",");
+					}
+					layer.rings.add(coords, count);
+					rings++;
+				} else if (tokens.skip("[END]")) {
+					if (rings > 0)
+						layer.add(type, endLevel, rings);
 				}
-				
 			}
+		} catch (IOException e) {
+			throw new RuntimeException("file reading failed.");
+		}
+
+		layer.finish();
+		return layer;
+	}
+
+	/**
+	 * Parses the turn restriction file. Each line bans turning at a node from
+	 * the segment of one road that comes from one neighbour onto the segment
+	 * of another road that goes to another neighbour. The road IDs don't
+	 * always agree with the segment file, so a segment between the right
+	 * nodes is used when none on the named road is. Segments that can't be
+	 * driven in the direction of the turn are left out, since no route takes
+	 * them that way anyway. This needs the graph's
+	 * adjacency, so it has to come after the segments are loaded.
+	 */
+	public static TurnRestrictions parseRestrictions(File restrictions,
+			Graph graph) {
+		TurnRestrictions turns = new TurnRestrictions(graph.nodeArray.length);
+
+		try {
+			Tokenizer tokens = new Tokenizer(new FileInputStream(restrictions));
+			tokens.nextLine(); // throw away the top line of the file.
+
+			while (tokens.nextLine()) {
+				Node from = graph.nodes.get(tokens.nextInt());
+				int fromRoad = tokens.nextInt();
+				Node via = graph.nodes.get(tokens.nextInt());
+				int toRoad = tokens.nextInt();
+				Node to = graph.nodes.get(tokens.nextInt());
 
-			br.close();
+				int[] ins = segmentsBetween(graph, from, via, fromRoad);
+				int[] outs = segmentsBetween(graph, via, to, toRoad);
+				if (ins.length == 0 || outs.length == 0) {
+					turns.unresolved++;
+					continue;
+				}
+				for (int in : ins)
+					for (int out : outs)
+						turns.add(in, via.index, out);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException("file reading failed.");
 		}
 
-		return set;
+		return turns;
+	}
+
+	/**
+	 * Returns the segments that can be driven from a to b, by dense index:
+	 * the ones on the given road if there are any, otherwise all of them.
+	 */
+	private static int[] segmentsBetween(Graph graph, Node a, Node b,
+			int roadID) {
+		if (a == null || b == null)
+			return new int[0];
+		// a segment is one forward edge from a, unless it's a two-way loop
+		// at a, which is two. the ones on the road are kept at the front.
+		Adjacency out = graph.forward;
+		int[] found = new int[out.degree(a.index)];
+		int count = 0, onRoad = 0;
+		for (int e = out.start(a.index); e < out.end(a.index); e++) {
+			int seg = out.segment[e];
+			if (out.target[e] != b.index || contains(found, count, seg))
+				continue;
+			if (graph.segmentArray[seg].road.roadID == roadID) {
+				found[count++] = found[onRoad];
+				found[onRoad++] = seg;
+			} else {
+				found[count++] = seg;
+			}
+		}
+		return Arrays.copyOf(found, onRoad > 0 ? onRoad : count);
+	}
+
+	private static boolean contains(int[] values, int count, int value) {
+		for (int i = 0; i < count; i++)
+			if (values[i] == value)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Parses the node file on a pool of threads. The file is split into
+	 * ranges of whole lines which are tokenised in parallel, and the results
+	 * are merged in file order, so the map is the same as parseNodes gives.
+	 */
+	public static Map<Integer, Node> parseNodes(File nodes, Graph graph,
+			ExecutorService pool) {
+		return parseNodes(nodes, graph, pool, 0);
+	}
+
+	/**
+	 * Parses the node file in the given number of ranges, or as many as suit
+	 * the file and the machine if that's 0.
+	 */
+	static Map<Integer, Node> parseNodes(File nodes, final Graph graph,
+			ExecutorService pool, int chunkCount) {
+		List<List<Node>> chunks = parseChunks(nodes, false, chunkCount, pool,
+				new ChunkParser<List<Node>>() {
+					public List<Node> parse(Tokenizer tokens) throws IOException {
+						List<Node> list = new ArrayList<Node>();
+						while (tokens.nextLine())
+							list.add(parseNode(tokens, graph));
+						return list;
+					}
+				});
+
+		Map<Integer, Node> map = new HashMap<Integer, Node>();
+		for (List<Node> chunk : chunks)
+			for (Node node : chunk)
+				map.put(node.nodeID, node);
+		return map;
+	}
+
+	/**
+	 * Parses the segment file on a pool of threads, in the same way as the
+	 * node file. The nodes and roads must already be in the graph.
+	 */
+	public static Collection<Segment> parseSegments(File segments,
+			Graph graph, ExecutorService pool) {
+		return parseSegments(segments, graph, pool, 0);
+	}
+
+	/**
+	 * Parses the segment file in the given number of ranges, or as many as
+	 * suit the file and the machine if that's 0.
+	 */
+	static Collection<Segment> parseSegments(File segments,
+			final Graph graph, ExecutorService pool, int chunkCount) {
+		List<SegmentChunk> chunks = parseChunks(segments, true, chunkCount,
+				pool, new ChunkParser<SegmentChunk>() {
+					public SegmentChunk parse(Tokenizer tokens) throws IOException {
+						SegmentChunk chunk = new SegmentChunk();
+						chunk.parse(tokens, graph);
+						return chunk;
+					}
+				});
+
+		List<Segment> list = new ArrayList<Segment>();
+		List<Geometry> shapes = new ArrayList<Geometry>();
+		for (SegmentChunk chunk : chunks) {
+			list.addAll(chunk.segments);
+			shapes.add(chunk.geometry);
+		}
+		graph.geometry = Geometry.concat(shapes);
+		return list;
+	}
+
+	private static Node parseNode(Tokenizer tokens, Graph graph) {
+		int nodeID = tokens.nextInt();
+		double lat = tokens.nextDouble();
+		double lon = tokens.nextDouble();
+
+		return new Node(graph, nodeID, lat, lon);
+	}
+
+	/**
+	 * The segments parsed from part of the segment file, along with their
+	 * shapes, in the same order.
+	 */
+	private static class SegmentChunk {
+		final List<Segment> segments = new ArrayList<Segment>();
+		final Geometry geometry = new Geometry();
+
+		void parse(Tokenizer tokens, Graph graph) throws IOException {
+			while (tokens.nextLine()) {
+				int roadID = tokens.nextInt();
+				double length = tokens.nextDouble();
+				int node1ID = tokens.nextInt();
+				int node2ID = tokens.nextInt();
+
+				// the rest of the line is the coordinates, which the tokenizer
+				// parses into an array it reuses for every line.
+				int count = tokens.nextDoubles();
+				geometry.add(tokens.doubles(), count);
+
+				// two-way roads are a single segment; the graph's adjacency
+				// arrays give them an edge in each direction.
+				segments.add(new Segment(graph, roadID, length, node1ID,
+						node2ID));
+			}
+		}
+	}
+
+	/**
+	 * Parses a range of a file. Implementations are called from several
+	 * threads at once.
+	 */
+	private interface ChunkParser<T> {
+		T parse(Tokenizer tokens) throws IOException;
 	}
 
-	private static int asInt(String str) {
-		return Integer.parseInt(str);
+	/**
+	 * Reads a whole file, splits it into ranges of whole lines (chunks of
+	 * them, or if that's 0, a number to suit the file and the machine), and
+	 * parses each range as a task on the pool. Returns what was parsed from
+	 * each range, in file order.
+	 */
+	private static <T> List<T> parseChunks(File file, boolean header,
+			int chunks, ExecutorService pool, final ChunkParser<T> parser) {
+		try {
+			final byte[] data = Files.readAllBytes(file.toPath());
+			int from = header ? lineAfter(data, 0) : 0;
+
+			if (chunks <= 0)
+				chunks = Math.min(CHUNKS_PER_THREAD
+						* Runtime.getRuntime().availableProcessors(),
+						1 + (data.length - from) / MIN_CHUNK_BYTES);
+			int[] bounds = splitLines(data, from, chunks);
+
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			for (int i = 0; i < chunks; i++) {
+				final int start = bounds[i], end = bounds[i + 1];
+				futures.add(pool.submit(new Callable<T>() {
+					public T call() throws IOException {
+						return parser.parse(new Tokenizer(data, start, end));
+					}
+				}));
+			}
+
+			List<T> results = new ArrayList<T>();
+			for (Future<T> f : futures)
+				results.add(f.get());
+			return results;
+		} catch (IOException | ExecutionException e) {
+			throw new RuntimeException("file reading failed.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("file reading interrupted.", e);
+		}
+	}
+
+	/**
+	 * Splits data[from..] into the given number of ranges of roughly equal
+	 * size, moving each boundary forward to the start of a line.
+	 */
+	private static int[] splitLines(byte[] data, int from, int chunks) {
+		int[] bounds = new int[chunks + 1];
+		bounds[0] = from;
+		for (int i = 1; i < chunks; i++) {
+			int at = from + (int) ((long) (data.length - from) * i / chunks);
+			bounds[i] = Math.max(bounds[i - 1], lineAfter(data, at - 1));
+		}
+		bounds[chunks] = data.length;
+		return bounds;
 	}
 
-	private static double asDouble(String str) {
-		return Double.parseDouble(str);
+	/**
+	 * Returns the position just past the first newline at or after at.
+	 */
+	private static int lineAfter(byte[] data, int at) {
+		while (at < data.length && data[at] != '\n')
+			at++;
+		return Math.min(at + 1, data.length);
 	}
 }
 
@@ -0,0 +1,243 @@
+package code;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A PolygonLayer holds the filled shapes from polygon-shapes.mp (lakes,
+ * parks, the coastline, buildings and so on) and draws the ones that are on
+ * screen underneath the roads.
+ *
+ * The rings of all the polygons are packed into one Geometry, with the rings
+ * of polygon p being shapes ringStart[p] up to ringStart[p + 1]. Each polygon
+ * has a Type, which decides its colour, and an EndLevel, which is the most
+ * zoomed out level of detail it's still drawn at: level 0 is the most zoomed
+ * in, and small things like buildings disappear as you zoom out.
+ */
+public class PolygonLayer {
+
+	// the smallest scale each level of detail is used at, from level 0 down;
+	// anything more zoomed out than the last is the level after it.
+	private static final double[] LEVEL_SCALES = { 32, 8, 2 };
+
+	// the order polygons are filled in, from the bottom up, by their type.
+	private static final int BOTTOM = 0, LAND = 1, WATER = 2, TOP = 3;
+
+	final Geometry rings = new Geometry();
+	private int[] ringStart = new int[64];
+	private int[] type = new int[64], endLevel = new int[64];
+	private int count;
+
+	// the bounding box of each polygon, four floats per polygon, and an index
+	// over them.
+	private float[] boxes;
+	private SpatialGrid index;
+	// polygons by the order they are filled in, and each polygon's place in
+	// that order.
+	private int[] order, rank;
+
+	// scratch space for drawing, only used by one thread at a time.
+	private int[] visible = new int[256];
+	private int visibleCount;
+	private int[] xs = new int[256], ys = new int[256];
+
+	/**
+	 * Adds a polygon made of the last ringCount rings added to the rings
+	 * Geometry.
+	 */
+	public void add(int polygonType, int polygonEndLevel, int ringCount) {
+		if (count + 2 > ringStart.length) {
+			ringStart = Arrays.copyOf(ringStart, ringStart.length * 2);
+			type = Arrays.copyOf(type, ringStart.length);
+			endLevel = Arrays.copyOf(endLevel, ringStart.length);
+		}
+		type[count] = polygonType;
+		endLevel[count] = polygonEndLevel;
+		ringStart[count + 1] = rings.shapeCount();
+		ringStart[count] = ringStart[count + 1] - ringCount;
+		count++;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Builds the bounding boxes, spatial index and levels of detail, once all
+	 * the polygons have been added.
+	 */
+	public void finish() {
+		rings.trim();
+		rings.buildLevels();
+
+		float[] ringBoxes = rings.bounds();
+		boxes = new float[4 * count];
+		for (int p = 0; p < count; p++) {
+			float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+			float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+			for (int r = ringStart[p]; r < ringStart[p + 1]; r++) {
+				x0 = Math.min(x0, ringBoxes[4 * r]);
+				y0 = Math.min(y0, ringBoxes[4 * r + 1]);
+				x1 = Math.max(x1, ringBoxes[4 * r + 2]);
+				y1 = Math.max(y1, ringBoxes[4 * r + 3]);
+			}
+			boxes[4 * p] = x0;
+			boxes[4 * p + 1] = y0;
+			boxes[4 * p + 2] = x1;
+			boxes[4 * p + 3] = y1;
+		}
+		index = new SpatialGrid(boxes);
+
+		// sort the polygons by layer, keeping the file order within a layer,
+		// by counting how many there are in each.
+		int[] start = new int[TOP + 2];
+		for (int p = 0; p < count; p++)
+			start[layer(type[p]) + 1]++;
+		for (int l = 0; l <= TOP; l++)
+			start[l + 1] += start[l];
+		order = new int[count];
+		rank = new int[count];
+		for (int p = 0; p < count; p++) {
+			rank[p] = start[layer(type[p])]++;
+			order[rank[p]] = p;
+		}
+	}
+
+	/**
+	 * Returns the level of detail to draw at for a scale.
+	 */
+	public static int level(double scale) {
+		for (int l = 0; l < LEVEL_SCALES.length; l++)
+			if (scale >= LEVEL_SCALES[l])
+				return l;
+		return LEVEL_SCALES.length;
+	}
+
+	/**
+	 * Fills all the polygons that are on screen and shown at this scale.
+	 */
+	public void draw(Graphics2D g, Dimension screen, Location origin,
+			double scale) {
+		final int level = level(scale);
+		// anything under a pixel across isn't worth filling.
+		final double tiny = 1 / scale;
+
+		visibleCount = 0;
+		index.query(origin.x, origin.y - screen.height / scale, origin.x
+				+ screen.width / scale, origin.y, new IntConsumer() {
+			public void accept(int p) {
+				if (endLevel[p] < level)
+					return;
+				if (boxes[4 * p + 2] - boxes[4 * p] < tiny
+						&& boxes[4 * p + 3] - boxes[4 * p + 1] < tiny)
+					return;
+				if (visibleCount == visible.length)
+					visible = Arrays.copyOf(visible, visibleCount * 2);
+				visible[visibleCount++] = rank[p];
+			}
+		});
+		Arrays.sort(visible, 0, visibleCount);
+
+		Geometry shapes = rings.levelFor(scale);
+		int lastType = -1;
+		for (int i = 0; i < visibleCount; i++) {
+			int p = order[visible[i]];
+			if (type[p] != lastType) {
+				g.setColor(colour(type[p]));
+				lastType = type[p];
+			}
+			if (ringStart[p + 1] - ringStart[p] == 1)
+				fillRing(g, shapes, ringStart[p], origin, scale);
+			else
+				fillRings(g, shapes, p, origin, scale);
+		}
+	}
+
+	private void fillRing(Graphics2D g, Geometry shapes, int ring,
+			Location origin, double scale) {
+		int from = shapes.offset[ring], n = shapes.offset[ring + 1] - from;
+		if (n < 3)
+			return;
+		if (n > xs.length) {
+			xs = new int[Math.max(n, xs.length * 2)];
+			ys = new int[xs.length];
+		}
+		float[] xy = shapes.xy;
+		for (int i = 0; i < n; i++) {
+			xs[i] = (int) ((xy[2 * (from + i)] - origin.x) * scale);
+			ys[i] = (int) ((origin.y - xy[2 * (from + i) + 1]) * scale);
+		}
+		// filling leaves out the pixels on the right and bottom edges, which
+		// shows as a seam between polygons that share an edge, so draw the
+		// outline in as well.
+		g.fillPolygon(xs, ys, n);
+		g.drawPolygon(xs, ys, n);
+	}
+
+	/**
+	 * Fills a polygon with several rings, where the inner rings are holes.
+	 */
+	private void fillRings(Graphics2D g, Geometry shapes, int p,
+			Location origin, double scale) {
+		Path2D.Float path = new Path2D.Float(Path2D.WIND_EVEN_ODD);
+		float[] xy = shapes.xy;
+		for (int r = ringStart[p]; r < ringStart[p + 1]; r++) {
+			int from = shapes.offset[r], to = shapes.offset[r + 1];
+			if (to - from < 3)
+				continue;
+			for (int v = from; v < to; v++) {
+				float x = (float) ((xy[2 * v] - origin.x) * scale);
+				float y = (float) ((origin.y - xy[2 * v + 1]) * scale);
+				if (v == from)
+					path.moveTo(x, y);
+				else
+					path.lineTo(x, y);
+			}
+			path.closePath();
+		}
+		g.fill(path);
+		g.draw(path);
+	}
+
+	/**
+	 * Returns which layer a polygon type is filled in. Big areas like the sea
+	 * and urban areas go at the bottom, then parks and other land use, then
+	 * lakes and rivers, then buildings and runways on top.
+	 */
+	private static int layer(int type) {
+		if (type == 0x28 || type <= 0x3 || type == 0x16 || type == 0x1e
+				|| type == 0x50)
+			return BOTTOM;
+		if (isWater(type))
+			return WATER;
+		if (type == 0x13 || type == 0xe)
+			return TOP;
+		return LAND;
+	}
+
+	private static boolean isWater(int type) {
+		return (type >= 0x28 && type <= 0x29) || (type >= 0x3b && type <= 0x49);
+	}
+
+	/**
+	 * Returns the colour to fill a polygon type with. These are the usual
+	 * meanings of the Polish map format types.
+	 */
+	private static Color colour(int type) {
+		if (isWater(type))
+			return Mapper.WATER_COLOUR;
+		if ((type >= 0x14 && type <= 0x1f) || type == 0x50)
+			return Mapper.PARK_COLOUR;
+		if (type == 0x13 || type == 0xe)
+			return Mapper.BUILDING_COLOUR;
+		if (type <= 0x3)
+			return Mapper.URBAN_COLOUR;
+		return Mapper.LAND_USE_COLOUR;
+	}
+}
+
+// code for COMP261 assignments
@@ -15,6 +15,14 @@ public class Road {
 	public final String name, city;
 	public final Collection<Segment> components;
 	public int oneway;
+	public final int speed;
+	// the rest of the road file's columns, kept so that a graph loaded from a
+	// Snapshot has the same roads as one parsed from the file.
+	public final int type, roadclass, notforcar, notforpede, notforbicy;
+
+	// speed limits in km/h for each of the speed categories in the road
+	// file. category 7 is "no limit", which we treat as the motorway limit.
+	private static final double[] SPEED_LIMITS = { 5, 20, 40, 60, 80, 100, 110, 110 };
 	
 	public Road(int roadID, int type, String label, String city, int oneway,
 			int speed, int roadclass, int notforcar, int notforpede,
@@ -25,6 +33,12 @@ public class Road {
 		this.components = new HashSet<Segment>();
 		
 		this.oneway = oneway;
+		this.speed = speed;
+		this.type = type;
+		this.roadclass = roadclass;
+		this.notforcar = notforcar;
+		this.notforpede = notforpede;
+		this.notforbicy = notforbicy;
 	}
 
 	public void addSegment(Segment seg) {
@@ -35,6 +49,13 @@ public class Road {
 		return this.name;
 	}
 	
+	/**
+	 * Returns the speed limit of this road in km/h.
+	 */
+	public double speedKmh(){
+		return SPEED_LIMITS[speed];
+	}
+	
 	public boolean oneWay(){
 		if(oneway == 1){
 		return true;
@@ -0,0 +1,221 @@
+package code;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A RouteCache remembers the routes found between pairs of nodes, so asking
+ * for the same route again doesn't search again. Routes are keyed on the
+ * start node, goal node, mode and profile, so each mode's route and the
+ * work it took are kept apart, and stored as arrays of dense segment indices
+ * rather than lists of Segments.
+ *
+ * The cache is split into shards by key, each a LinkedHashMap in access order
+ * behind its own lock, so threads routing different pairs rarely wait on each
+ * other. A shard evicts its least recently used routes when it holds more
+ * than its share of either the entry or the memory limit.
+ *
+ * Every route is stamped with the Graph's version, and the whole cache is
+ * emptied the first time it's used after the version changes, so closing a
+ * road or reweighting an edge can never leave a stale route behind.
+ */
+public class RouteCache {
+
+	private static final int SHARDS = 16;
+	// roughly what an entry costs besides its segments: the key, the entry,
+	// the map's node and the array header.
+	private static final int ENTRY_BYTES = 112;
+
+	private final Graph graph;
+	private final Shard[] shards = new Shard[SHARDS];
+	// the graph version the cached routes were found on.
+	private volatile int version;
+
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public RouteCache(Graph graph, int maxEntries, long maxBytes) {
+		this.graph = graph;
+		this.version = graph.version();
+		for (int i = 0; i < SHARDS; i++)
+			shards[i] = new Shard(Math.max(1, maxEntries / SHARDS), Math.max(
+					1, maxBytes / SHARDS));
+	}
+
+	/**
+	 * Returns the route from start to goal, from the cache if it's there and
+	 * otherwise from the router, which is then cached. A route from the cache
+	 * is marked as cached, with no expanded nodes, and its time is that of the
+	 * lookup.
+	 */
+	public Router.Route route(Router router, Node start, Node goal,
+			Router.Mode mode, Router.Profile profile) {
+		long begin = System.nanoTime();
+		checkVersion();
+		Key key = new Key(start.index, goal.index, mode, profile);
+		Shard shard = shards[(key.hashCode() & 0x7fffffff) % SHARDS];
+
+		Entry entry = shard.get(key);
+		if (entry != null && entry.version == version) {
+			hits.increment();
+			Router.Route route = new Router.Route();
+			route.cached = true;
+			route.length = entry.length;
+			for (int s : entry.segments)
+				route.segments.add(graph.segmentArray[s]);
+			route.nanos = System.nanoTime() - begin;
+			return route;
+		}
+
+		misses.increment();
+		int searchedOn = graph.version();
+		Router.Route route = router.route(start, goal, mode, profile);
+		int[] segments = new int[route.segments.size()];
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = route.segments.get(i).index;
+		// don't cache a route if the graph changed while it was being found.
+		if (searchedOn == graph.version())
+			shard.put(key, new Entry(segments, route.length, searchedOn));
+		return route;
+	}
+
+	/**
+	 * Empties the cache if the graph has changed since the routes in it were
+	 * found.
+	 */
+	private void checkVersion() {
+		int current = graph.version();
+		if (current != version) {
+			synchronized (this) {
+				if (current != version) {
+					clear();
+					version = current;
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		for (Shard shard : shards)
+			shard.clear();
+	}
+
+	public long hits() {
+		return hits.sum();
+	}
+
+	public long misses() {
+		return misses.sum();
+	}
+
+	public long evictions() {
+		return evictions.sum();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Shard shard : shards)
+			size += shard.size();
+		return size;
+	}
+
+	public String toString() {
+		long h = hits(), m = misses();
+		return String.format("%d routes, %d hits, %d misses (%.1f%%), %d evicted",
+				size(), h, m, h + m == 0 ? 0 : 100.0 * h / (h + m), evictions());
+	}
+
+	private static class Key {
+		final int start, goal;
+		final Router.Mode mode;
+		final Router.Profile profile;
+
+		Key(int start, int goal, Router.Mode mode, Router.Profile profile) {
+			this.start = start;
+			this.goal = goal;
+			this.mode = mode;
+			this.profile = profile;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return start == k.start && goal == k.goal && mode == k.mode
+					&& profile == k.profile;
+		}
+
+		public int hashCode() {
+			int h = start * 0x9E3779B1 + goal;
+			return ((h ^ (h >>> 16)) * 31 + mode.ordinal()) * 31
+					+ profile.ordinal();
+		}
+	}
+
+	private static class Entry {
+		final int[] segments;
+		final double length;
+		final int version;
+
+		Entry(int[] segments, double length, int version) {
+			this.segments = segments;
+			this.length = length;
+			this.version = version;
+		}
+
+		long bytes() {
+			return ENTRY_BYTES + 4L * segments.length;
+		}
+	}
+
+	/**
+	 * One part of the cache, with its own lock and limits.
+	 */
+	private class Shard {
+		private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<Key, Entry>(
+				16, 0.75f, true);
+		private final int maxEntries;
+		private final long maxBytes;
+		private long bytes;
+
+		Shard(int maxEntries, long maxBytes) {
+			this.maxEntries = maxEntries;
+			this.maxBytes = maxBytes;
+		}
+
+		synchronized Entry get(Key key) {
+			return map.get(key);
+		}
+
+		synchronized void put(Key key, Entry entry) {
+			Entry old = map.put(key, entry);
+			if (old != null)
+				bytes -= old.bytes();
+			bytes += entry.bytes();
+
+			// drop the least recently used until under both limits, though
+			// never the one just added.
+			Iterator<Map.Entry<Key, Entry>> it = map.entrySet().iterator();
+			while ((map.size() > maxEntries || bytes > maxBytes)
+					&& map.size() > 1) {
+				Entry eldest = it.next().getValue();
+				it.remove();
+				bytes -= eldest.bytes();
+				evictions.increment();
+			}
+		}
+
+		synchronized void clear() {
+			map.clear();
+			bytes = 0;
+		}
+
+		synchronized int size() {
+			return map.size();
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,428 @@
+package code;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * RouteServer serves routing queries over HTTP on localhost, for tools that
+ * don't want the Swing frame. It uses the JDK's built in HTTP server, with
+ * requests handled on a fixed pool of one thread per core, so that each
+ * thread's search state is allocated once and reused for every request it
+ * handles, rather than once per request. Responses are JSON, written straight
+ * onto the response stream as they're worked out.
+ *
+ * <pre>
+ * java code.RouteServer data/large 8080
+ *
+ * GET /route?from=12345&amp;to=23456[&amp;mode=HIERARCHY][&amp;profile=TIME]
+ * GET /nearest?lat=-36.85&amp;lon=174.76
+ * GET /search?prefix=queen[&amp;limit=20]
+ * GET /metrics
+ * </pre>
+ *
+ * Bad or missing parameters, including node IDs and limits that aren't whole
+ * numbers in range, get a 400 and unknown nodes a 404, with an error
+ * message in the body. /metrics reports each endpoint's request count,
+ * errors, and mean and worst latency since the server started, and the route
+ * cache's hits and misses.
+ */
+public class RouteServer {
+
+	// the most roads /search returns unless asked for fewer.
+	private static final int DEFAULT_SEARCH_LIMIT = 50;
+	// how many routes the route cache keeps, and how much memory they take.
+	private static final int ROUTE_CACHE_ENTRIES = 100000;
+	private static final long ROUTE_CACHE_BYTES = 64L << 20;
+
+	private final Graph graph;
+	private final Router router;
+	private final RouteCache routes;
+	private final Trie trie;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newFixedThreadPool(Runtime
+			.getRuntime().availableProcessors());
+	private final List<Endpoint> endpoints = new ArrayList<Endpoint>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final long started = System.nanoTime();
+
+	public RouteServer(Graph graph, int port) throws IOException {
+		this.graph = graph;
+		this.router = new Router(graph);
+		this.routes = new RouteCache(graph, ROUTE_CACHE_ENTRIES,
+				ROUTE_CACHE_BYTES);
+		this.trie = new Trie(graph.roads.values());
+		this.server = HttpServer.create(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+
+		add(new Endpoint("/route") {
+			void respond(Map<String, String> params, Response response)
+					throws IOException {
+				Node from = node(params, "from"), to = node(params, "to");
+				Router.Mode mode = Router.Mode.BIDIRECTIONAL;
+				Router.Profile profile = Router.Profile.DISTANCE;
+				try {
+					if (params.containsKey("mode"))
+						mode = Router.Mode.valueOf(params.get("mode")
+								.toUpperCase());
+					if (params.containsKey("profile"))
+						profile = Router.Profile.valueOf(params.get("profile")
+								.toUpperCase());
+				} catch (IllegalArgumentException e) {
+					throw new RequestException(400, "unknown mode or profile");
+				}
+				Router.Route route = routes.route(router, from, to, mode,
+						profile);
+
+				Writer out = response.ok();
+				out.write("{\"from\":" + from.nodeID + ",\"to\":" + to.nodeID
+						+ ",\"mode\":\"" + mode + "\",\"profile\":\""
+						+ profile + "\",\"found\":" + route.found());
+				if (route.found()) {
+					out.write(profile == Router.Profile.TIME ? ",\"hours\":"
+							: ",\"length\":");
+					out.write(Double.toString(route.length));
+					out.write(",\"segments\":[");
+					for (int i = 0; i < route.segments.size(); i++) {
+						if (i > 0)
+							out.write(',');
+						out.write(Integer.toString(route.segments.get(i).index));
+					}
+					// the nodes along the way, from the start.
+					out.write("],\"nodes\":[" + from.nodeID);
+					Node at = from;
+					for (Segment seg : route.segments) {
+						at = seg.start == at ? seg.end : seg.start;
+						out.write("," + at.nodeID);
+					}
+					out.write(']');
+				}
+				// a cached route wasn't searched for, so has no expanded count.
+				out.write(",\"cached\":" + route.cached);
+				if (!route.cached)
+					out.write(",\"expanded\":" + route.expanded);
+				out.write(",\"millis\":" + route.millis() + "}");
+			}
+		});
+
+		add(new Endpoint("/nearest") {
+			void respond(Map<String, String> params, Response response)
+					throws IOException {
+				Location loc = Location.newFromLatLon(number(params, "lat"),
+						number(params, "lon"));
+				Node node = graph.findNearest(loc);
+				if (node == null)
+					throw new RequestException(404, "no nodes");
+
+				Writer out = response.ok();
+				out.write("{\"node\":" + node.nodeID + ",\"distance\":"
+						+ node.location.distance(loc) + "}");
+			}
+		});
+
+		add(new Endpoint("/search") {
+			void respond(Map<String, String> params, Response response)
+					throws IOException {
+				String prefix = params.get("prefix");
+				if (prefix == null)
+					throw new RequestException(400, "missing prefix");
+				int limit = params.containsKey("limit") ? integer(params,
+						"limit") : DEFAULT_SEARCH_LIMIT;
+				if (limit < 0)
+					throw new RequestException(400, "bad limit: " + limit);
+				Collection<Road> roads = trie.get(prefix.toLowerCase());
+
+				Writer out = response.ok();
+				out.write("{\"count\":" + roads.size() + ",\"roads\":[");
+				int written = 0;
+				for (Road road : roads) {
+					if (written == limit)
+						break;
+					if (written++ > 0)
+						out.write(',');
+					out.write("{\"id\":" + road.roadID + ",\"name\":");
+					quote(out, road.name);
+					out.write(",\"city\":");
+					quote(out, road.city);
+					out.write('}');
+				}
+				out.write("]}");
+			}
+		});
+
+		add(new Endpoint("/metrics") {
+			void respond(Map<String, String> params, Response response)
+					throws IOException {
+				Writer out = response.ok();
+				out.write("{\"routeCache\":{\"size\":" + routes.size()
+						+ ",\"hits\":" + routes.hits() + ",\"misses\":"
+						+ routes.misses() + ",\"evictions\":"
+						+ routes.evictions() + "},\"uptimeSeconds\":"
+						+ (System.nanoTime() - started) / 1e9 + ",\"inFlight\":"
+						+ (inFlight.get() - 1) + ",\"endpoints\":{");
+				for (int i = 0; i < endpoints.size(); i++) {
+					Endpoint e = endpoints.get(i);
+					long requests = e.requests.sum();
+					if (i > 0)
+						out.write(',');
+					quote(out, e.path);
+					out.write(":{\"requests\":" + requests + ",\"errors\":"
+							+ e.errors.sum() + ",\"meanMillis\":"
+							+ (requests == 0 ? 0 : e.nanos.sum() / 1e6 / requests)
+							+ ",\"maxMillis\":" + e.maxNanos.get() / 1e6 + "}");
+				}
+				out.write("}}");
+			}
+		});
+	}
+
+	private void add(Endpoint endpoint) {
+		endpoints.add(endpoint);
+		server.createContext(endpoint.path, endpoint);
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+	}
+
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * One endpoint: parses the query string, times the request, and turns
+	 * RequestExceptions into error responses. Subclasses check their
+	 * parameters before calling ok, so that errors can still set the status.
+	 */
+	private abstract class Endpoint implements HttpHandler {
+		final String path;
+		final LongAdder requests = new LongAdder(), errors = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final AtomicLong maxNanos = new AtomicLong();
+
+		Endpoint(String path) {
+			this.path = path;
+		}
+
+		abstract void respond(Map<String, String> params, Response response)
+				throws IOException;
+
+		public void handle(HttpExchange exchange) throws IOException {
+			long begin = System.nanoTime();
+			inFlight.incrementAndGet();
+			Response response = new Response(exchange);
+			try {
+				respond(params(exchange.getRequestURI().getRawQuery()),
+						response);
+				response.finish();
+			} catch (RequestException e) {
+				errors.increment();
+				response.error(e.status, e.getMessage());
+			} catch (RuntimeException e) {
+				errors.increment();
+				response.error(500, e.toString());
+			} finally {
+				exchange.close();
+				inFlight.decrementAndGet();
+				long took = System.nanoTime() - begin;
+				requests.increment();
+				nanos.add(took);
+				long max;
+				while (took > (max = maxNanos.get())
+						&& !maxNanos.compareAndSet(max, took))
+					;
+			}
+		}
+	}
+
+	/**
+	 * The response to one request, which is either a 200 with a JSON body
+	 * written through ok, or an error.
+	 */
+	private static class Response {
+		private final HttpExchange exchange;
+		private Writer out;
+
+		Response(HttpExchange exchange) {
+			this.exchange = exchange;
+		}
+
+		/**
+		 * Sends a 200 and returns a writer onto the body, which is chunked
+		 * since its length isn't known yet.
+		 */
+		Writer ok() throws IOException {
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			out = new BufferedWriter(new OutputStreamWriter(
+					exchange.getResponseBody(), StandardCharsets.UTF_8));
+			return out;
+		}
+
+		void finish() throws IOException {
+			if (out != null)
+				out.flush();
+		}
+
+		/**
+		 * Sends an error status with the message in the body, unless the
+		 * headers have already gone, in which case the client just gets a
+		 * truncated body.
+		 */
+		void error(int status, String message) throws IOException {
+			if (out != null)
+				return;
+			StringWriter body = new StringWriter();
+			body.write("{\"error\":");
+			quote(body, message);
+			body.write('}');
+			byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			exchange.getResponseBody().write(bytes);
+		}
+	}
+
+	/**
+	 * An error in a request, to be sent back with the given status.
+	 */
+	private static class RequestException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Looks up the node whose ID is the given parameter.
+	 */
+	private Node node(Map<String, String> params, String name) {
+		Node node = graph.nodes.get(integer(params, name));
+		if (node == null)
+			throw new RequestException(404, "no node " + params.get(name));
+		return node;
+	}
+
+	/**
+	 * Returns a parameter that has to be a whole number that fits in an int,
+	 * such as a node ID.
+	 */
+	private static int integer(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null)
+			throw new RequestException(400, "missing " + name);
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, "bad " + name + ": " + value);
+		}
+	}
+
+	private static double number(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if (value == null)
+			throw new RequestException(400, "missing " + name);
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, "bad " + name + ": " + value);
+		}
+	}
+
+	/**
+	 * Splits a raw query string into its decoded names and values.
+	 */
+	private static Map<String, String> params(String query) {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null)
+			return params;
+		try {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq < 0)
+					params.put(URLDecoder.decode(pair, "UTF-8"), "");
+				else
+					params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+							URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new RequestException(400, "bad query string");
+		}
+		return params;
+	}
+
+	/**
+	 * Writes a string as a JSON string literal.
+	 */
+	private static void quote(Writer out, String s) throws IOException {
+		out.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if (c < 0x20) {
+				out.write(String.format("\\u%04x", (int) c));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: RouteServer <data directory> [port]");
+			System.exit(1);
+		}
+		File dir = new File(args[0]);
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+
+		File restrictions = new File(dir, "restrictions.tab");
+		Graph graph = new Graph(new File(dir, "nodeID-lat-lon.tab"), new File(
+				dir, "roadID-roadInfo.tab"), new File(dir,
+				"roadSeg-roadID-length-nodeID-nodeID-coords.tab"), null,
+				restrictions.exists() ? restrictions : null);
+		// have the hierarchy ready before the first request asks for it.
+		graph.hierarchy();
+		RouteServer server = new RouteServer(graph, port);
+		server.start();
+		System.err.println("serving on http://localhost:" + server.port() + "/");
+	}
+}
+
+// code for COMP261 assignments
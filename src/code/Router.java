@@ -0,0 +1,458 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Router finds shortest paths between nodes of a graph, by A* search, with
+ * the better of the straight line distance and the graph's Landmarks bound as
+ * the heuristic. It can
+ * search forward from the start only, or from both ends at once, which
+ * expands far fewer nodes on long routes, or use the graph's contraction
+ * hierarchy, which is fastest of all once it has been built.
+ *
+ * Those searches label nodes, so they can't see turn restrictions. The
+ * edge-based search labels the edges of the forward adjacency instead, and
+ * checks each turn from one edge to the next against the graph's
+ * TurnRestrictions as it goes, without building an edge-expanded copy of the
+ * graph. Any route that turns out to take a banned turn is searched again
+ * that way, so every route a Router returns is legal.
+ *
+ * The graph is only ever read, and the search state lives in per-thread
+ * SearchStates indexed by dense node number, so any number of threads can
+ * route on one Router at once. Closed segments are skipped rather than
+ * weighted out of the graph: each search takes the graph's set of closures
+ * once at the start, so segments closed or reopened meanwhile only affect
+ * the searches after it.
+ */
+public class Router {
+
+	/**
+	 * The kinds of search a Router can do.
+	 */
+	public enum Mode {
+		UNIDIRECTIONAL, BIDIRECTIONAL, HIERARCHY, EDGE_BASED
+	}
+
+	/**
+	 * What a route is shortest by: length, or travel time at the speed
+	 * limits.
+	 */
+	public enum Profile {
+		DISTANCE, TIME
+	}
+
+	private final Graph graph;
+	// node locations, for the heuristic.
+	private final double[] x, y;
+	// what the straight line distance between Locations is scaled by to make
+	// it a lower bound on road lengths.
+	private final double heuristicScale;
+	private final Landmarks landmarks;
+	// the fastest speed limit on any segment, in km/h, which turns a bound on
+	// length into one on time.
+	private final double maxSpeed;
+
+	// each thread's search state, for the forward and backward searches, and
+	// for the edge-based search, by edge.
+	private final ThreadLocal<SearchState[]> states = new ThreadLocal<SearchState[]>() {
+		protected SearchState[] initialValue() {
+			return new SearchState[] { new SearchState(x.length),
+					new SearchState(x.length),
+					new SearchState(graph.forward.edgeCount()) };
+		}
+	};
+	// each thread's description of its current search.
+	private final ThreadLocal<Query> queries = new ThreadLocal<Query>() {
+		protected Query initialValue() {
+			return new Query();
+		}
+	};
+
+	public Router(Graph graph) {
+		this.graph = graph;
+		int n = graph.nodeArray.length;
+		this.x = new double[n];
+		this.y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = graph.nodeArray[i].location.x;
+			y[i] = graph.nodeArray[i].location.y;
+		}
+
+		// Location doesn't shrink longitude by the cosine of the latitude, so
+		// its distances come out up to a quarter longer than the segment
+		// lengths in the data. An overestimate makes A* miss the shortest
+		// path, so scale the heuristic down by the smallest ratio of length to
+		// straight line distance of any segment; then it is consistent.
+		double ratio = 1, fastest = 0;
+		for (Segment seg : graph.segmentArray) {
+			fastest = Math.max(fastest, seg.road.speedKmh());
+			double straight = Math.hypot(x[seg.start.index] - x[seg.end.index],
+					y[seg.start.index] - y[seg.end.index]);
+			if (straight > 0)
+				ratio = Math.min(ratio, seg.length / straight);
+		}
+		this.heuristicScale = ratio;
+		this.maxSpeed = fastest;
+		this.landmarks = graph.landmarks();
+	}
+
+	/**
+	 * Finds the shortest path from start to goal, respecting one-way roads
+	 * and turn restrictions.
+	 */
+	public Route route(Node start, Node goal, Mode mode) {
+		return route(start, goal, mode, Profile.DISTANCE);
+	}
+
+	/**
+	 * Finds the shortest or fastest path from start to goal. The hierarchy is
+	 * built on the lengths of all the segments, so fastest paths, and any
+	 * path while segments are closed, are searched for bidirectionally
+	 * instead. A pair the component labels show has no route isn't searched
+	 * at all.
+	 */
+	public Route route(Node start, Node goal, Mode mode, Profile profile) {
+		long begin = System.nanoTime();
+		// the search leaves out the same closures the labels were worked out
+		// for.
+		Components components = graph.components();
+		long[] closed = components.closed();
+		if (mode == Mode.HIERARCHY
+				&& (profile != Profile.DISTANCE || closed != null))
+			mode = Mode.BIDIRECTIONAL;
+		Route route;
+		if (!components.mayReach(start, goal)) {
+			// there's no route, and searching would only find that out
+			// after going over everything start can reach.
+			route = new Route();
+			route.nanos = System.nanoTime() - begin;
+			return route;
+		}
+		if (mode == Mode.HIERARCHY)
+			route = graph.hierarchy().route(start, goal);
+		else if (mode == Mode.BIDIRECTIONAL)
+			route = bidirectional(start.index, goal.index,
+					query(start, goal, profile, closed));
+		else if (mode == Mode.EDGE_BASED)
+			route = edgeBased(start.index, goal.index,
+					query(start, goal, profile, closed));
+		else
+			route = unidirectional(start.index, goal.index,
+					query(start, goal, profile, closed));
+
+		TurnRestrictions turns = graph.restrictions;
+		if (mode != Mode.EDGE_BASED && turns != null
+				&& !turns.isLegal(start, route.segments)) {
+			int expanded = route.expanded;
+			route = edgeBased(start.index, goal.index,
+					query(start, goal, profile, closed));
+			route.expanded += expanded;
+		}
+		route.nanos = System.nanoTime() - begin;
+		return route;
+	}
+
+	/**
+	 * Finds everything reachable from origin within limit (kilometres, or
+	 * hours for the TIME profile) by Dijkstra's algorithm, stopping at the
+	 * limit, and puts it into an Isochrone. Reusing the Isochrone for the
+	 * next search allocates nothing. Turn restrictions aren't applied.
+	 */
+	public Isochrone isochrone(Node origin, double limit, Profile profile,
+			Isochrone into) {
+		SearchState state = states.get()[0];
+		state.reset();
+		Adjacency out = graph.forward;
+		double[] weight = profile == Profile.TIME ? out.time : out.length;
+		long[] closed = graph.closedSegments();
+		into.clear(origin, limit, profile);
+
+		IndexedHeap fringe = state.fringe;
+		state.set(origin.index, 0, -1);
+		fringe.push(origin.index, 0);
+		while (!fringe.isEmpty() && fringe.peekKey() <= limit) {
+			int u = fringe.pop();
+			state.close(u);
+			double du = state.dist(u);
+			into.addNode(u, du);
+			for (int e = out.start(u); e < out.end(u); e++) {
+				if (Graph.isClosed(closed, out.segment[e]))
+					continue;
+				int v = out.target[e];
+				double cost = du + weight[e];
+				if (cost < state.dist(v)) {
+					state.set(v, cost, e);
+					fringe.push(v, cost);
+				}
+			}
+		}
+
+		// an edge leaves the area if it goes from a node inside to one that's
+		// further than the limit, and isn't closed.
+		for (int i = 0; i < into.nodeCount; i++) {
+			int u = into.nodes[i];
+			for (int e = out.start(u); e < out.end(u); e++)
+				if (!state.isClosed(out.target[e])
+						&& !Graph.isClosed(closed, out.segment[e]))
+					into.addBoundary(out.segment[e]);
+		}
+		return into;
+	}
+
+	/**
+	 * Sets up this thread's Query for a search: picks its landmarks, the edge
+	 * weights for the profile, and the closed segments to skip.
+	 */
+	private Query query(Node start, Node goal, Profile profile, long[] closed) {
+		Query q = queries.get();
+		q.landmarkCount = landmarks.select(start.index, goal.index,
+				q.landmarks);
+		boolean isTime = profile == Profile.TIME;
+		q.out = isTime ? graph.forward.time : graph.forward.length;
+		q.in = isTime ? graph.backward.time : graph.backward.length;
+		q.perKm = isTime ? 1 / maxSpeed : 1;
+		q.closed = closed;
+		return q;
+	}
+
+	/**
+	 * A lower bound on the cost of a path from a to b: the better of the
+	 * scaled straight line distance and the landmarks' bound on its length,
+	 * converted to the query's profile.
+	 */
+	private double distance(int a, int b, Query q) {
+		return q.perKm
+				* Math.max(heuristicScale
+						* Math.hypot(x[a] - x[b], y[a] - y[b]), landmarks
+						.lowerBound(a, b, q.landmarks, q.landmarkCount));
+	}
+
+	private Route unidirectional(int s, int t, Query q) {
+		SearchState state = states.get()[0];
+		state.reset();
+		Adjacency out = graph.forward;
+		Route route = new Route();
+
+		IndexedHeap fringe = state.fringe;
+		state.set(s, 0, -1);
+		fringe.push(s, distance(s, t, q));
+
+		while (!fringe.isEmpty()) {
+			int u = fringe.pop();
+			state.close(u);
+			route.expanded++;
+			if (u == t)
+				break;
+
+			for (int e = out.start(u); e < out.end(u); e++) {
+				if (Graph.isClosed(q.closed, out.segment[e]))
+					continue;
+				int v = out.target[e];
+				double cost = state.dist(u) + q.out[e];
+				if (cost < state.dist(v)) {
+					state.set(v, cost, e);
+					fringe.push(v, cost + distance(v, t, q));
+				}
+			}
+		}
+
+		if (state.isClosed(t)) {
+			route.length = state.dist(t);
+			for (int v = t; v != s; v = out.source(state.parent(v)))
+				route.segments.add(graph.segmentArray[out.segment[state.parent(v)]]);
+			Collections.reverse(route.segments);
+		}
+		return route;
+	}
+
+	/**
+	 * Searches forward from s and backward from t at the same time, with the
+	 * average of the two searches' heuristics as the potential, so that
+	 * reduced edge costs are the same in both directions. The searches stop
+	 * when the smallest keys on their two queues add up to at least the best
+	 * path found so far, at which point no shorter path can be found.
+	 */
+	private Route bidirectional(int s, int t, Query q) {
+		SearchState[] pair = states.get();
+		SearchState forward = pair[0], backward = pair[1];
+		forward.reset();
+		backward.reset();
+		Adjacency out = graph.forward, in = graph.backward;
+		Route route = new Route();
+
+		IndexedHeap fringeF = forward.fringe, fringeB = backward.fringe;
+		forward.set(s, 0, -1);
+		backward.set(t, 0, -1);
+		fringeF.push(s, potential(s, s, t, q));
+		fringeB.push(t, -potential(t, s, t, q));
+
+		// the length of the best path found so far, and where its two halves
+		// meet.
+		double best = s == t ? 0 : Double.POSITIVE_INFINITY;
+		int meet = s == t ? s : -1;
+
+		while (!fringeF.isEmpty() && !fringeB.isEmpty()) {
+			double topF = fringeF.peekKey(), topB = fringeB.peekKey();
+			if (topF + topB >= best)
+				break;
+
+			if (topF <= topB) {
+				int u = fringeF.pop();
+				route.expanded++;
+				for (int e = out.start(u); e < out.end(u); e++) {
+					if (Graph.isClosed(q.closed, out.segment[e]))
+						continue;
+					int v = out.target[e];
+					double cost = forward.dist(u) + q.out[e];
+					if (cost < forward.dist(v)) {
+						forward.set(v, cost, e);
+						fringeF.push(v, cost + potential(v, s, t, q));
+						if (cost + backward.dist(v) < best) {
+							best = cost + backward.dist(v);
+							meet = v;
+						}
+					}
+				}
+			} else {
+				int u = fringeB.pop();
+				route.expanded++;
+				for (int e = in.start(u); e < in.end(u); e++) {
+					if (Graph.isClosed(q.closed, in.segment[e]))
+						continue;
+					int v = in.target[e];
+					double cost = backward.dist(u) + q.in[e];
+					if (cost < backward.dist(v)) {
+						backward.set(v, cost, e);
+						fringeB.push(v, cost - potential(v, s, t, q));
+						if (cost + forward.dist(v) < best) {
+							best = cost + forward.dist(v);
+							meet = v;
+						}
+					}
+				}
+			}
+		}
+
+		if (meet >= 0) {
+			route.length = best;
+			// the forward half, walked back from the meeting node...
+			for (int v = meet; v != s; v = out.source(forward.parent(v)))
+				route.segments.add(graph.segmentArray[out.segment[forward.parent(v)]]);
+			Collections.reverse(route.segments);
+			// ...and the backward half, which is already in order.
+			for (int v = meet; v != t; v = in.source(backward.parent(v)))
+				route.segments.add(graph.segmentArray[in.segment[backward.parent(v)]]);
+		}
+		return route;
+	}
+
+	/**
+	 * A* over the edges of the forward adjacency rather than the nodes, so
+	 * that the way a node was arrived at decides which turns can be taken out
+	 * of it. An edge's heuristic is that of the node it points to.
+	 */
+	private Route edgeBased(int s, int t, Query q) {
+		SearchState state = states.get()[2];
+		state.reset();
+		Adjacency out = graph.forward;
+		TurnRestrictions turns = graph.restrictions;
+		Route route = new Route();
+		if (s == t) {
+			route.length = 0;
+			return route;
+		}
+
+		IndexedHeap fringe = state.fringe;
+		for (int e = out.start(s); e < out.end(s); e++) {
+			if (!Graph.isClosed(q.closed, out.segment[e])
+					&& q.out[e] < state.dist(e)) {
+				state.set(e, q.out[e], -1);
+				fringe.push(e, q.out[e] + distance(out.target[e], t, q));
+			}
+		}
+
+		int last = -1;
+		while (!fringe.isEmpty()) {
+			int e = fringe.pop();
+			route.expanded++;
+			int v = out.target[e];
+			if (v == t) {
+				last = e;
+				break;
+			}
+
+			boolean restricted = turns != null && turns.hasTurns(v);
+			for (int f = out.start(v); f < out.end(v); f++) {
+				if (Graph.isClosed(q.closed, out.segment[f]))
+					continue;
+				if (restricted
+						&& turns.isBanned(out.segment[e], v, out.segment[f]))
+					continue;
+				double cost = state.dist(e) + q.out[f];
+				if (cost < state.dist(f)) {
+					state.set(f, cost, e);
+					fringe.push(f, cost + distance(out.target[f], t, q));
+				}
+			}
+		}
+
+		if (last >= 0) {
+			route.length = state.dist(last);
+			for (int e = last; e >= 0; e = state.parent(e))
+				route.segments.add(graph.segmentArray[out.segment[e]]);
+			Collections.reverse(route.segments);
+		}
+		return route;
+	}
+
+	/**
+	 * The forward search's potential at v: half of how much closer v looks to
+	 * t than to s. The backward search uses the negative of this.
+	 */
+	private double potential(int v, int s, int t, Query q) {
+		return (distance(v, t, q) - distance(s, v, q)) / 2;
+	}
+
+	/**
+	 * The edge weights and heuristic of one search. Each thread has one,
+	 * reused for every search it does.
+	 */
+	private static class Query {
+		final int[] landmarks = new int[Landmarks.ACTIVE];
+		int landmarkCount;
+		// the profile's edge weights forward and backward, and what a bound
+		// on length is multiplied by to bound them.
+		double[] out, in;
+		double perKm;
+		// the closed segments to skip, or null if none are.
+		long[] closed;
+	}
+
+	/**
+	 * The result of a search: the path, its cost, and how much work it took.
+	 */
+	public static class Route {
+		public final List<Segment> segments = new ArrayList<Segment>();
+		// the length of the path in kilometres, or for the TIME profile, its
+		// travel time in hours.
+		public double length = Double.POSITIVE_INFINITY;
+		// how many nodes were taken off the queues, and how long it took.
+		public int expanded;
+		public long nanos;
+		// whether it came from a RouteCache rather than a search, in which
+		// case nothing was expanded.
+		public boolean cached;
+
+		public boolean found() {
+			return length < Double.POSITIVE_INFINITY;
+		}
+
+		public double millis() {
+			return nanos / 1e6;
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,80 @@
+package code;
+
+import java.util.Arrays;
+
+/**
+ * SearchState is the working space of one shortest path search: the best
+ * known distance and parent edge of every node, by dense node index, which
+ * nodes have been closed, and the queue of nodes still to be expanded.
+ *
+ * Rather than clearing the arrays before each search, every search gets a
+ * new epoch number, and an entry only counts if it was stamped with the
+ * current epoch. Starting a search is then O(1) instead of O(number of
+ * nodes). A SearchState belongs to one thread at a time; the Router keeps one
+ * per thread.
+ */
+class SearchState {
+
+	private final double[] dist;
+	private final int[] parent;
+	// the epoch each node's dist and parent were set in, and the epoch it was
+	// closed in.
+	private final int[] reached, closed;
+	private int epoch;
+	// the fringe of the search, by dense node index.
+	final IndexedHeap fringe;
+
+	SearchState(int nodeCount) {
+		this.dist = new double[nodeCount];
+		this.parent = new int[nodeCount];
+		this.reached = new int[nodeCount];
+		this.closed = new int[nodeCount];
+		this.fringe = new IndexedHeap(nodeCount);
+	}
+
+	/**
+	 * Forgets everything, ready for a new search.
+	 */
+	void reset() {
+		fringe.clear();
+		epoch++;
+		if (epoch == Integer.MAX_VALUE) {
+			// after two billion searches, wipe the stamps for real.
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			epoch = 1;
+		}
+	}
+
+	/**
+	 * Returns the best known distance to a node, or infinity if it hasn't been
+	 * reached in this search.
+	 */
+	double dist(int node) {
+		return reached[node] == epoch ? dist[node] : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the edge a node was reached along, or -1 for the node the search
+	 * started from.
+	 */
+	int parent(int node) {
+		return parent[node];
+	}
+
+	void set(int node, double d, int edge) {
+		dist[node] = d;
+		parent[node] = edge;
+		reached[node] = epoch;
+	}
+
+	boolean isClosed(int node) {
+		return closed[node] == epoch;
+	}
+
+	void close(int node) {
+		closed[node] = epoch;
+	}
+}
+
+// code for COMP261 assignments
@@ -1,13 +1,12 @@
 package code;
 
 import java.awt.Graphics;
-import java.awt.Point;
 
 /**
  * A Segment is the most interesting class making up our graph, and represents
  * an edge between two Nodes. It knows the Road it belongs to as well as the
- * Nodes it joins, and contains a series of Locations that make up the length of
- * the Segment and can be used to render it.
+ * Nodes it joins. The series of Locations that make up the length of the
+ * Segment, and are used to render it, are kept in the graph's Geometry.
  * 
  * @author Tony Butler-Yeoman
  */
@@ -16,38 +15,46 @@ public class Segment {
 	public final Road road;
 	public final Node start, end;
 	public final double length;
-	public Location[] points;
+	final Graph graph;
+	// dense index of this segment in the graph's arrays, which is also the
+	// number of its shape in the graph's Geometry.
+	int index = -1;
 
 
 	public Segment(Graph graph, int roadID, double length, int node1ID,
-			int node2ID, double[] coords) {
+			int node2ID) {
+		this(graph, graph.roads.get(roadID), length, graph.nodes.get(node1ID),
+				graph.nodes.get(node2ID));
+	}
 
-		this.road = graph.roads.get(roadID);
-		this.start = graph.nodes.get(node1ID);
-		this.end = graph.nodes.get(node2ID);
+	/**
+	 * Makes a segment from its road and nodes, which needn't be in the graph
+	 * yet.
+	 */
+	Segment(Graph graph, Road road, double length, Node start, Node end) {
+		this.graph = graph;
+		this.road = road;
+		this.start = start;
+		this.end = end;
 		this.length = length;
+	}
 
-		points = new Location[coords.length / 2];
-		for (int i = 0; i < points.length; i++) {
-			points[i] = Location.newFromLatLon(coords[2 * i], coords[2 * i + 1]);
-		}
-		this.start.addSegment(this);
-		this.end.addSegment(this);
-		this.road.addSegment(this);
+	public void draw(Graphics g, Location origin, double scale) {
+		graph.geometry.draw(g, index, origin, scale);
+	}
 
-		if(!this.road.oneWay()){
-		this.start.addSegment(this);
-		this.road.addSegment(this);
-		this.end.addSegment(this);
-		}
+	/**
+	 * Returns the number of points along the segment.
+	 */
+	public int pointCount() {
+		return graph.geometry.end(index) - graph.geometry.start(index);
 	}
 
-	public void draw(Graphics g, Location origin, double scale) {
-		for (int i = 1; i < points.length; i++) {
-			Point p = points[i - 1].asPoint(origin, scale);
-			Point q = points[i].asPoint(origin, scale);
-			g.drawLine(p.x, p.y, q.x, q.y);
-		}
+	/**
+	 * Returns the i'th point along the segment.
+	 */
+	public Location getPoint(int i) {
+		return graph.geometry.location(graph.geometry.start(index) + i);
 	}
 
 	public Node getStartNode(){
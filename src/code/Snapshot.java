@@ -0,0 +1,284 @@
+package code;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A Snapshot is a binary copy of a parsed graph (nodes, roads, segments and
+ * their geometry), written next to the data files the first time they are
+ * loaded. On later runs the snapshot is memory-mapped and read straight back
+ * into a Graph, which is much faster than tokenising the text files again.
+ *
+ * The header records the modification time and size of each source file, so a
+ * snapshot that no longer matches its sources is ignored and rebuilt, and the
+ * whole file is covered by a CRC32 so a truncated write is never trusted.
+ */
+public class Snapshot {
+
+	public static final String FILENAME = "graph.snapshot";
+
+	private static final int MAGIC = 0x4D415053; // "MAPS"
+	// bump this whenever the layout below changes.
+	private static final int VERSION = 3;
+
+	/**
+	 * Returns where the snapshot for a set of data files lives.
+	 */
+	public static File fileFor(File nodes) {
+		return new File(nodes.getAbsoluteFile().getParentFile(), FILENAME);
+	}
+
+	/**
+	 * Tries to fill in the nodes, roads and segments of the graph from a
+	 * snapshot. Returns false, leaving the graph untouched, if the snapshot is
+	 * missing, unreadable, or out of date with respect to the sources. Nothing
+	 * is put into the graph until the whole snapshot has been read.
+	 */
+	public static boolean load(File snapshot, File[] sources, Graph graph) {
+		try {
+			ByteBuffer buf = map(snapshot, MAGIC, VERSION, sources);
+			if (buf == null)
+				return false;
+			read(buf, graph);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("ignoring unreadable snapshot " + snapshot
+					+ ": " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * Maps a file written by write, and returns its contents positioned just
+	 * past the header. Returns null if the file is missing, has the wrong
+	 * magic number or version, is out of date with respect to the sources, or
+	 * fails its checksum.
+	 */
+	static ByteBuffer map(File file, int magic, int version, File[] sources)
+			throws IOException {
+		if (!file.isFile())
+			return null;
+
+		// the mapping stays valid after the channel is closed.
+		MappedByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (!isValid(buf, magic, version, sources))
+			return null;
+
+		// skip the header, which isValid has already checked.
+		buf.position(12 + 16 * sources.length);
+		return buf;
+	}
+
+	private static boolean isValid(ByteBuffer buf, int magic, int version,
+			File[] sources) {
+		if (buf.limit() < 12 + 16 * sources.length + 8)
+			return false;
+		if (buf.getInt(0) != magic || buf.getInt(4) != version
+				|| buf.getInt(8) != sources.length)
+			return false;
+
+		for (int i = 0; i < sources.length; i++) {
+			int at = 12 + 16 * i;
+			if (buf.getLong(at) != sources[i].lastModified()
+					|| buf.getLong(at + 8) != sources[i].length())
+				return false;
+		}
+
+		// the checksum covers everything before it.
+		int end = buf.limit() - 8;
+		CRC32 crc = new CRC32();
+		ByteBuffer body = buf.duplicate();
+		body.position(0).limit(end);
+		crc.update(body);
+		return buf.getLong(end) == crc.getValue();
+	}
+
+	private static void read(ByteBuffer buf, Graph graph) {
+		// everything is read into locals first, so a snapshot that turns
+		// out to be bad partway through leaves the graph as it was.
+		int nodeCount = buf.getInt();
+		Map<Integer, Node> nodes = new HashMap<Integer, Node>();
+		for (int i = 0; i < nodeCount; i++) {
+			int nodeID = buf.getInt();
+			Location loc = new Location(buf.getDouble(), buf.getDouble());
+			nodes.put(nodeID, new Node(graph, nodeID, loc));
+		}
+
+		int roadCount = buf.getInt();
+		Map<Integer, Road> roads = new HashMap<Integer, Road>();
+		for (int i = 0; i < roadCount; i++) {
+			int roadID = buf.getInt();
+			String label = readString(buf);
+			String city = readString(buf);
+			int type = buf.getInt();
+			int oneway = buf.getInt();
+			int speed = buf.getInt();
+			int roadclass = buf.getInt();
+			int notforcar = buf.getInt();
+			int notforpede = buf.getInt();
+			int notforbicy = buf.getInt();
+			roads.put(roadID, new Road(roadID, type, label, city, oneway,
+					speed, roadclass, notforcar, notforpede, notforbicy));
+		}
+
+		int segCount = buf.getInt();
+		List<Segment> segments = new ArrayList<Segment>(segCount);
+		for (int i = 0; i < segCount; i++) {
+			int roadID = buf.getInt();
+			double length = buf.getDouble();
+			int node1ID = buf.getInt();
+			int node2ID = buf.getInt();
+			Road road = roads.get(roadID);
+			Node start = nodes.get(node1ID), end = nodes.get(node2ID);
+			if (road == null || start == null || end == null)
+				throw new RuntimeException("snapshot reading failed.");
+			segments.add(new Segment(graph, road, length, start, end));
+		}
+
+		// the geometry is stored as its two arrays, which are copied out in
+		// bulk.
+		int[] offset = new int[buf.getInt()];
+		buf.asIntBuffer().get(offset);
+		buf.position(buf.position() + 4 * offset.length);
+		float[] xy = new float[buf.getInt()];
+		buf.asFloatBuffer().get(xy);
+		buf.position(buf.position() + 4 * xy.length);
+		// the body should end just where the checksum starts.
+		if (buf.position() != buf.limit() - 8)
+			throw new RuntimeException("snapshot reading failed.");
+		Geometry geometry = new Geometry(xy, offset);
+
+		graph.nodes = nodes;
+		graph.roads = roads;
+		graph.segments = segments;
+		graph.geometry = geometry;
+	}
+
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a snapshot of the graph.
+	 */
+	public static void save(File snapshot, File[] sources, final Graph graph)
+			throws IOException {
+		write(snapshot, MAGIC, VERSION, sources, new Body() {
+			public void write(DataOutputStream out) throws IOException {
+				writeGraph(out, graph);
+			}
+		});
+	}
+
+	/**
+	 * Writes the body of a file that map can read back. The file is written
+	 * under a temporary name and then moved into place, so readers never see
+	 * half of it.
+	 */
+	static void write(File file, int magic, int version, File[] sources,
+			Body body) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		CRC32 crc = new CRC32();
+
+		try (BufferedOutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(tmp), 1 << 16)) {
+			DataOutputStream out = new DataOutputStream(
+					new CheckedOutputStream(stream, crc));
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(sources.length);
+			for (File f : sources) {
+				out.writeLong(f.lastModified());
+				out.writeLong(f.length());
+			}
+			body.write(out);
+			out.flush();
+
+			// the checksum goes straight to the file, past the stream that
+			// computes it.
+			new DataOutputStream(stream).writeLong(crc.getValue());
+		}
+
+		Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes the part of a file after its header.
+	 */
+	interface Body {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private static void writeGraph(DataOutputStream out, Graph graph)
+			throws IOException {
+		out.writeInt(graph.nodeArray.length);
+		for (Node n : graph.nodeArray) {
+			out.writeInt(n.nodeID);
+			out.writeDouble(n.location.x);
+			out.writeDouble(n.location.y);
+		}
+
+		out.writeInt(graph.roads.size());
+		for (Road r : graph.roads.values()) {
+			out.writeInt(r.roadID);
+			writeString(out, r.name);
+			writeString(out, r.city);
+			out.writeInt(r.type);
+			out.writeInt(r.oneway);
+			out.writeInt(r.speed);
+			out.writeInt(r.roadclass);
+			out.writeInt(r.notforcar);
+			out.writeInt(r.notforpede);
+			out.writeInt(r.notforbicy);
+		}
+
+		out.writeInt(graph.segmentArray.length);
+		for (Segment s : graph.segmentArray) {
+			out.writeInt(s.road.roadID);
+			out.writeDouble(s.length);
+			out.writeInt(s.start.nodeID);
+			out.writeInt(s.end.nodeID);
+		}
+
+		Geometry geometry = graph.geometry;
+		out.writeInt(geometry.shapeCount() + 1);
+		for (int i = 0; i <= geometry.shapeCount(); i++)
+			out.writeInt(geometry.offset[i]);
+		out.writeInt(2 * geometry.vertexCount());
+		for (int i = 0; i < 2 * geometry.vertexCount(); i++)
+			out.writeFloat(geometry.xy[i]);
+	}
+
+	private static void writeString(DataOutputStream out, String str)
+			throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
+
+// code for COMP261 assignments
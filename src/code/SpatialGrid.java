@@ -0,0 +1,106 @@
+package code;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid of buckets over a set of axis-aligned boxes, each identified
+ * by an int. Every box is listed in each cell it overlaps, so finding the
+ * boxes that intersect a rectangle only has to look at the cells under the
+ * rectangle, and costs time in proportion to what's inside it rather than to
+ * the number of boxes.
+ *
+ * The boxes are given as a float array with four entries per box: min x,
+ * min y, max x, max y. The cells are stored compressed-sparse-row style, in
+ * the same way as Adjacency.
+ */
+public class SpatialGrid {
+
+	// roughly how many boxes we aim to have in each cell.
+	private static final int BOXES_PER_CELL = 8;
+
+	private final float[] boxes;
+	private final double minX, minY, cellSize;
+	private final int columns, rows;
+	// the boxes in cell (c, r) are items[cellStart[r * columns + c]] up to
+	// items[cellStart[r * columns + c + 1]].
+	private final int[] cellStart;
+	private final int[] items;
+
+	public SpatialGrid(float[] boxes) {
+		this.boxes = boxes;
+		int n = boxes.length / 4;
+
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < n; i++) {
+			x0 = Math.min(x0, boxes[4 * i]);
+			y0 = Math.min(y0, boxes[4 * i + 1]);
+			x1 = Math.max(x1, boxes[4 * i + 2]);
+			y1 = Math.max(y1, boxes[4 * i + 3]);
+		}
+		if (n == 0)
+			x0 = y0 = x1 = y1 = 0;
+
+		// pick square cells so there are about BOXES_PER_CELL boxes to a
+		// cell if they were spread evenly.
+		double width = Math.max(x1 - x0, 1e-9), height = Math.max(y1 - y0, 1e-9);
+		double cells = Math.max(1, n / (double) BOXES_PER_CELL);
+		this.cellSize = Math.sqrt(width * height / cells);
+		this.minX = x0;
+		this.minY = y0;
+		this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+		this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+
+		// count the boxes in each cell, then fill the cells in.
+		int[] count = new int[columns * rows + 1];
+		for (int i = 0; i < n; i++)
+			for (int r = row(boxes[4 * i + 1]); r <= row(boxes[4 * i + 3]); r++)
+				for (int c = column(boxes[4 * i]); c <= column(boxes[4 * i + 2]); c++)
+					count[r * columns + c + 1]++;
+		for (int i = 0; i < columns * rows; i++)
+			count[i + 1] += count[i];
+		this.cellStart = count.clone();
+		this.items = new int[count[columns * rows]];
+		for (int i = 0; i < n; i++)
+			for (int r = row(boxes[4 * i + 1]); r <= row(boxes[4 * i + 3]); r++)
+				for (int c = column(boxes[4 * i]); c <= column(boxes[4 * i + 2]); c++)
+					items[count[r * columns + c]++] = i;
+	}
+
+	private int column(double x) {
+		return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellSize)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+	}
+
+	/**
+	 * Calls the visitor once with the id of every box that intersects the
+	 * given rectangle.
+	 */
+	public void query(double x0, double y0, double x1, double y1,
+			IntConsumer visitor) {
+		int c0 = column(x0), c1 = column(x1), r0 = row(y0), r1 = row(y1);
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * columns + c;
+				for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+					int i = items[k];
+					float bx0 = boxes[4 * i], by0 = boxes[4 * i + 1];
+					if (bx0 > x1 || by0 > y1 || boxes[4 * i + 2] < x0
+							|| boxes[4 * i + 3] < y0)
+						continue;
+					// a box can be in several of the cells we look at, so only
+					// report it from the cell holding the corner of its overlap
+					// with the rectangle.
+					if (column(Math.max(bx0, x0)) == c
+							&& row(Math.max(by0, y0)) == r)
+						visitor.accept(i);
+				}
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
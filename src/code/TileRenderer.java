@@ -0,0 +1,157 @@
+package code;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A TileRenderer draws the base map (everything Graph.drawBase draws) in
+ * fixed-size square tiles, and keeps the tiles it has drawn in a cache, so
+ * that panning around only has to copy images onto the screen instead of
+ * redrawing the whole network.
+ *
+ * Tiles are laid out on a grid of pixels for each zoom level: tile (tx, ty)
+ * at scale s covers the Locations with x * s in [tx * TILE_SIZE, (tx + 1) *
+ * TILE_SIZE) and -y * s in [ty * TILE_SIZE, (ty + 1) * TILE_SIZE). The cache
+ * is bounded by the memory the tile images take up, and throws out the least
+ * recently used tiles first. It can be shared between threads.
+ */
+public class TileRenderer {
+
+	public static final int TILE_SIZE = 256;
+	// each tile is an int per pixel.
+	private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+	private final Graph graph;
+	private final long maxBytes;
+	// access-ordered, so iteration starts at the least recently used tile.
+	private final LinkedHashMap<Key, BufferedImage> tiles = new LinkedHashMap<Key, BufferedImage>(
+			64, 0.75f, true);
+
+	public TileRenderer(Graph graph, long maxBytes) {
+		this.graph = graph;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Draws the base map for the given view by copying the tiles that cover
+	 * it onto g, drawing any that aren't in the cache yet.
+	 */
+	public void draw(Graphics g, Dimension screen, Location origin, double scale) {
+		draw(g, screen, origin, scale, null);
+	}
+
+	/**
+	 * Draws the base map like draw above, but checks before each tile whether
+	 * the drawing has been cancelled, and gives up if it has. Returns true if
+	 * the whole view was drawn.
+	 */
+	public boolean draw(Graphics g, Dimension screen, Location origin,
+			double scale, BooleanSupplier cancelled) {
+		// the pixel of the view's top left corner on this zoom level's grid.
+		long left = (long) Math.floor(origin.x * scale);
+		long top = (long) Math.floor(-origin.y * scale);
+
+		long tx0 = Math.floorDiv(left, TILE_SIZE);
+		long ty0 = Math.floorDiv(top, TILE_SIZE);
+		long tx1 = Math.floorDiv(left + screen.width, TILE_SIZE);
+		long ty1 = Math.floorDiv(top + screen.height, TILE_SIZE);
+
+		for (long ty = ty0; ty <= ty1; ty++) {
+			for (long tx = tx0; tx <= tx1; tx++) {
+				if (cancelled != null && cancelled.getAsBoolean())
+					return false;
+				BufferedImage tile = tile(scale, tx, ty);
+				g.drawImage(tile, (int) (tx * TILE_SIZE - left),
+						(int) (ty * TILE_SIZE - top), null);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a tile from the cache, drawing and caching it if needed.
+	 */
+	public synchronized BufferedImage tile(double scale, long tx, long ty) {
+		Key key = new Key(scale, tx, ty);
+		BufferedImage tile = tiles.get(key);
+		if (tile == null) {
+			tile = render(scale, tx, ty);
+			tiles.put(key, tile);
+			evict();
+		}
+		return tile;
+	}
+
+	private BufferedImage render(double scale, long tx, long ty) {
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_OFF);
+		// tiles are opaque, so copying them to the screen needs no blending.
+		g.setColor(Mapper.BACKGROUND_COLOUR);
+		g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+
+		Location corner = new Location(tx * TILE_SIZE / scale, -ty * TILE_SIZE
+				/ scale);
+		graph.drawBase(g, new Dimension(TILE_SIZE, TILE_SIZE), corner, scale);
+		g.dispose();
+		return tile;
+	}
+
+	private void evict() {
+		Iterator<BufferedImage> it = tiles.values().iterator();
+		while (tiles.size() * TILE_BYTES > maxBytes && it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Throws away every cached tile, for when the base map has changed.
+	 */
+	public synchronized void clear() {
+		tiles.clear();
+	}
+
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	/**
+	 * A tile's place in the cache: its zoom level and grid position.
+	 */
+	private static class Key {
+		final double scale;
+		final long tx, ty;
+
+		Key(double scale, long tx, long ty) {
+			this.scale = scale;
+			this.tx = tx;
+			this.ty = ty;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key) o;
+			return Double.compare(k.scale, scale) == 0 && k.tx == tx
+					&& k.ty == ty;
+		}
+
+		public int hashCode() {
+			long h = Double.doubleToLongBits(scale);
+			h = h * 31 + tx;
+			h = h * 31 + ty;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,373 @@
+package code;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Tokenizer scans the tab separated data files a line at a time, straight
+ * out of a byte buffer. Numbers are parsed from the bytes without making a
+ * String for each token (which is what String.split and Double.parseDouble
+ * cost us), so the only Strings it creates are the ones asked for with
+ * nextString, like road labels.
+ *
+ * It either reads from an InputStream through a reusable buffer, or scans a
+ * fixed range of a byte array that has already been read in.
+ */
+public class Tokenizer {
+
+	// exact powers of ten; every one of these is representable as a double.
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	// the largest mantissa that converts to a double without rounding.
+	private static final long MAX_EXACT = 1L << 53;
+
+	private final InputStream in;
+	private byte[] buf;
+	private int pos, limit;
+	// end of the current line (the position of its newline, or limit), or -1
+	// before the first line.
+	private int lineEnd = -1;
+	private boolean eof;
+
+	// scratch space for nextDoubles, reused for every line.
+	private double[] doubles = new double[32];
+
+	/**
+	 * Makes a Tokenizer that reads from a stream. The stream is closed when
+	 * the end of it is reached.
+	 */
+	public Tokenizer(InputStream in) {
+		this.in = in;
+		this.buf = new byte[1 << 16];
+	}
+
+	/**
+	 * Makes a Tokenizer over data[from, to), which should start at the
+	 * beginning of a line.
+	 */
+	public Tokenizer(byte[] data, int from, int to) {
+		this.in = null;
+		this.eof = true;
+		this.buf = data;
+		this.pos = from;
+		this.limit = to;
+	}
+
+	/**
+	 * Moves to the next non-blank line, returning false at the end of the
+	 * input. Any tokens left on the current line are skipped.
+	 */
+	public boolean nextLine() throws IOException {
+		while (true) {
+			if (lineEnd >= 0)
+				pos = Math.min(lineEnd + 1, limit);
+
+			lineEnd = findNewline();
+			if (pos >= lineEnd && lineEnd >= limit)
+				return false;
+			if (!isBlank())
+				return true;
+		}
+	}
+
+	/**
+	 * Returns the position of the newline ending the line that starts at pos,
+	 * reading more of the stream if it's needed.
+	 */
+	private int findNewline() throws IOException {
+		int at = pos;
+		while (true) {
+			while (at < limit && buf[at] != '\n')
+				at++;
+			if (at < limit || eof)
+				return at;
+
+			// the line runs past the buffer, so move it to the front (growing
+			// the buffer if it's too small to hold it) and read some more.
+			int kept = limit - pos;
+			if (kept == buf.length) {
+				byte[] bigger = new byte[buf.length * 2];
+				System.arraycopy(buf, pos, bigger, 0, kept);
+				buf = bigger;
+			} else {
+				System.arraycopy(buf, pos, buf, 0, kept);
+			}
+			at -= pos;
+			pos = 0;
+			limit = kept;
+
+			int n = in.read(buf, limit, buf.length - limit);
+			if (n < 0) {
+				eof = true;
+				in.close();
+				return limit;
+			}
+			limit += n;
+		}
+	}
+
+	private boolean isBlank() {
+		for (int i = pos; i < lineEnd; i++)
+			if (!isSpace(buf[i]))
+				return false;
+		return true;
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == '\t' || b == ' ' || b == '\r';
+	}
+
+	/**
+	 * Returns true if there are no more tokens on the current line.
+	 */
+	public boolean atLineEnd() {
+		skipSeparators();
+		return pos >= lineEnd;
+	}
+
+	private void skipSeparators() {
+		while (pos < lineEnd && isSpace(buf[pos]))
+			pos++;
+	}
+
+	/**
+	 * Returns the next token on the line as a String. Tokens are separated by
+	 * tabs only, so they can contain spaces (although trailing ones are
+	 * trimmed).
+	 */
+	public String nextString() {
+		while (pos < lineEnd && buf[pos] == '\t')
+			pos++;
+		int start = pos;
+		while (pos < lineEnd && buf[pos] != '\t')
+			pos++;
+		int end = pos;
+		while (end > start && (buf[end - 1] == ' ' || buf[end - 1] == '\r'))
+			end--;
+		return new String(buf, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the next token on the line as an int.
+	 */
+	public int nextInt() {
+		skipSeparators();
+		int start = pos;
+		boolean negative = false;
+		if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+'))
+			negative = buf[pos++] == '-';
+
+		long value = 0;
+		int digits = 0;
+		while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9') {
+			value = value * 10 + (buf[pos++] - '0');
+			digits++;
+		}
+		value = negative ? -value : value;
+		if (digits == 0 || digits > 10 || !atTokenEnd()
+				|| value != (int) value)
+			throw badNumber(start);
+		return (int) value;
+	}
+
+	/**
+	 * Parses the next token on the line as a double, giving exactly the same
+	 * result as Double.parseDouble. Anything with up to 17 significant digits
+	 * and no exponent (which is everything in our files) is converted without
+	 * making a String.
+	 */
+	public double nextDouble() {
+		skipSeparators();
+		int start = pos;
+		double value = readDouble(start);
+		if (!atTokenEnd())
+			throw badNumber(start);
+		return value;
+	}
+
+	/**
+	 * Parses a double that is followed straight away by the given character
+	 * rather than a separator, like the numbers in "(-36.8,174.6)", and skips
+	 * over that character.
+	 */
+	public double nextDouble(char end) {
+		int start = pos;
+		double value = readDouble(start);
+		if (pos >= lineEnd || buf[pos] != end)
+			throw badNumber(start);
+		pos++;
+		return value;
+	}
+
+	/**
+	 * Reads a double starting at pos, leaving pos just after it.
+	 */
+	private double readDouble(int start) {
+		boolean negative = false;
+		if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+'))
+			negative = buf[pos++] == '-';
+
+		// accumulate up to 18 significant digits into a long, and count the
+		// power of ten the result has to be scaled by.
+		long mantissa = 0;
+		int significant = 0, scale = 0;
+		boolean seenDigit = false, seenPoint = false;
+		for (; pos < lineEnd; pos++) {
+			byte b = buf[pos];
+			if (b >= '0' && b <= '9') {
+				seenDigit = true;
+				if (significant < 18) {
+					if (mantissa != 0 || b != '0')
+						significant++;
+					mantissa = mantissa * 10 + (b - '0');
+					if (seenPoint)
+						scale--;
+				} else if (!seenPoint) {
+					scale++; // a digit we can't keep, before the point.
+				}
+			} else if (b == '.' && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+		if (!seenDigit)
+			throw badNumber(start);
+
+		if (pos < lineEnd && (buf[pos] == 'e' || buf[pos] == 'E')) {
+			// exponents never appear in our files, so don't bother being
+			// clever about them.
+			pos++;
+			if (pos < lineEnd && (buf[pos] == '-' || buf[pos] == '+'))
+				pos++;
+			while (pos < lineEnd && buf[pos] >= '0' && buf[pos] <= '9')
+				pos++;
+			return parseSlowly(start);
+		}
+
+		double value;
+		if (significant < 18 && scale == 0)
+			value = mantissa;
+		else if (significant < 18 && scale < 0 && scale >= -22
+				&& mantissa <= MAX_EXACT)
+			value = mantissa / POWERS_OF_TEN[-scale];
+		else if (significant < 18 && scale < 0 && scale >= -22)
+			value = roundQuotient(mantissa, POWERS_OF_TEN[-scale]);
+		else
+			// too many digits, or a huge number: neither happens in our files.
+			return parseSlowly(start);
+		return negative ? -value : value;
+	}
+
+	private double parseSlowly(int start) {
+		try {
+			return Double.parseDouble(new String(buf, start, pos - start,
+					StandardCharsets.ISO_8859_1));
+		} catch (NumberFormatException e) {
+			throw badNumber(start);
+		}
+	}
+
+	/**
+	 * Returns the double nearest to m / p, for an m too big to be exactly a
+	 * double (so m / p can be out by one unit in the last place). The
+	 * remainder m - q * p is worked out exactly with a fused multiply-add to
+	 * see which way the estimate needs nudging.
+	 */
+	private static double roundQuotient(long m, double p) {
+		double q = m / p;
+		for (int i = 0; i < 2; i++) {
+			double hi = q * p;
+			double lo = Math.fma(q, p, -hi);
+			// hi is within a few units of m, which is above 2^53, so it's a
+			// whole number and (long) hi is exact.
+			double remainder = (m - (long) hi) - lo;
+			double halfUlp = Math.ulp(q) * p / 2;
+			if (remainder > halfUlp)
+				q = Math.nextUp(q);
+			else if (remainder < -halfUlp)
+				q = Math.nextDown(q);
+			else if (remainder == halfUlp && isOdd(q))
+				return Math.nextUp(q); // a tie, which rounds to even.
+			else if (remainder == -halfUlp && isOdd(q))
+				return Math.nextDown(q);
+			else
+				break;
+		}
+		return q;
+	}
+
+	private static boolean isOdd(double q) {
+		return (Double.doubleToRawLongBits(q) & 1) != 0;
+	}
+
+	/**
+	 * Parses all the remaining tokens on the line as doubles, into the array
+	 * returned by doubles(). Returns how many there were.
+	 */
+	public int nextDoubles() {
+		int count = 0;
+		while (!atLineEnd()) {
+			if (count == doubles.length) {
+				double[] bigger = new double[doubles.length * 2];
+				System.arraycopy(doubles, 0, bigger, 0, count);
+				doubles = bigger;
+			}
+			doubles[count++] = nextDouble();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the scratch array filled by the last call to nextDoubles. It is
+	 * overwritten by the next call.
+	 */
+	public double[] doubles() {
+		return doubles;
+	}
+
+	/**
+	 * If the rest of the line starts with the given text, skips over it and
+	 * returns true. Otherwise returns false and leaves the line alone.
+	 */
+	public boolean skip(String prefix) {
+		int n = prefix.length();
+		if (lineEnd - pos < n)
+			return false;
+		for (int i = 0; i < n; i++)
+			if (buf[pos + i] != prefix.charAt(i))
+				return false;
+		pos += n;
+		return true;
+	}
+
+	/**
+	 * Returns the rest of the current line as a String, with trailing spaces
+	 * trimmed.
+	 */
+	public String rest() {
+		int start = pos, end = lineEnd;
+		while (end > start && isSpace(buf[end - 1]))
+			end--;
+		pos = lineEnd;
+		return new String(buf, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	private boolean atTokenEnd() {
+		return pos >= lineEnd || isSpace(buf[pos]);
+	}
+
+	private NumberFormatException badNumber(int start) {
+		int end = start;
+		while (end < lineEnd && !isSpace(buf[end]))
+			end++;
+		return new NumberFormatException("bad number \""
+				+ new String(buf, start, end - start,
+						StandardCharsets.ISO_8859_1) + "\"");
+	}
+}
+
+// code for COMP261 assignments
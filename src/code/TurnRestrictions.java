@@ -0,0 +1,124 @@
+package code;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TurnRestrictions holds the banned turns from restrictions.tab. A turn is
+ * keyed on the segment it comes in along, the node it turns at, and the
+ * segment it leaves along, all by dense index, and the keys live in an open
+ * addressed hash table of primitive arrays, so looking one up allocates
+ * nothing.
+ *
+ * Most nodes have no restrictions at all, so each node also has a flag saying
+ * whether any turn at it is banned, which lets searches skip the lookup.
+ */
+public class TurnRestrictions {
+
+	// marks an empty slot; a real key never has -1 as its from segment.
+	private static final long EMPTY = -1L;
+
+	// the (from segment, to segment) of each slot, and its via node.
+	private long[] keys;
+	private int[] vias;
+	private int size;
+	// restrictions that didn't match any segments in the graph.
+	int unresolved;
+
+	private final boolean[] hasTurns;
+
+	public TurnRestrictions(int nodeCount) {
+		this.hasTurns = new boolean[nodeCount];
+		this.keys = new long[16];
+		this.vias = new int[16];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns true if any turn at the node is banned.
+	 */
+	public boolean hasTurns(int via) {
+		return hasTurns[via];
+	}
+
+	/**
+	 * Bans turning from one segment onto another at a node.
+	 */
+	public void add(int fromSegment, int via, int toSegment) {
+		if (isBanned(fromSegment, via, toSegment))
+			return;
+		// keep the table at most half full.
+		if (2 * (size + 1) > keys.length)
+			grow();
+		put(key(fromSegment, toSegment), via);
+		hasTurns[via] = true;
+		size++;
+	}
+
+	/**
+	 * Returns true if turning from one segment onto another at a node is
+	 * banned.
+	 */
+	public boolean isBanned(int fromSegment, int via, int toSegment) {
+		if (!hasTurns[via])
+			return false;
+		long key = key(fromSegment, toSegment);
+		int mask = keys.length - 1;
+		for (int i = slot(key, via, mask);; i = (i + 1) & mask) {
+			if (keys[i] == EMPTY)
+				return false;
+			if (keys[i] == key && vias[i] == via)
+				return true;
+		}
+	}
+
+	/**
+	 * Returns true if a path of segments from start takes no banned turns.
+	 */
+	public boolean isLegal(Node start, List<Segment> path) {
+		Node at = start;
+		Segment last = null;
+		for (Segment seg : path) {
+			if (last != null && isBanned(last.index, at.index, seg.index))
+				return false;
+			at = seg.start == at ? seg.end : seg.start;
+			last = seg;
+		}
+		return true;
+	}
+
+	private void put(long key, int via) {
+		int mask = keys.length - 1;
+		int i = slot(key, via, mask);
+		while (keys[i] != EMPTY)
+			i = (i + 1) & mask;
+		keys[i] = key;
+		vias[i] = via;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldVias = vias;
+		keys = new long[oldKeys.length * 2];
+		vias = new int[keys.length];
+		Arrays.fill(keys, EMPTY);
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != EMPTY)
+				put(oldKeys[i], oldVias[i]);
+	}
+
+	private static long key(int fromSegment, int toSegment) {
+		return ((long) fromSegment << 32) | (toSegment & 0xffffffffL);
+	}
+
+	private static int slot(long key, int via, int mask) {
+		long h = (key ^ ((long) via << 16)) * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & mask;
+	}
+}
+
+// code for COMP261 assignments
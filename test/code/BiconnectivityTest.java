@@ -0,0 +1,150 @@
+package code;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests the articulation points, bridges and blocks against brute force:
+ * taking each node or segment out in turn and counting the connected
+ * components that are left. It does this for the whole small map, and again
+ * after closing random segments, with the analysis kept up to date as they
+ * were closed.
+ */
+public class BiconnectivityTest {
+
+	public static void main(String[] args) {
+		Graph graph = Tests.small();
+		check(graph, graph.biconnectivity(), "open");
+
+		Random random = new Random(10);
+		for (int i = 0; i < 150; i++)
+			graph.closeSegment(graph.segmentArray[random
+					.nextInt(graph.segmentArray.length)]);
+		check(graph, graph.biconnectivity(), "after closures");
+	}
+
+	private static void check(Graph graph, Biconnectivity found, String when) {
+		int n = graph.nodeArray.length;
+		int[] label = new int[n];
+		int base = components(graph, null, null, label);
+
+		// a node is an articulation point if taking it out leaves more
+		// components than there were, not counting it if it had no open
+		// segments. two segments at it are in the same block if their
+		// other ends are still connected without it.
+		int articulations = 0;
+		for (Node v : graph.nodeArray) {
+			int after = components(graph, v, null, label);
+			boolean alone = openSegments(graph, v) == 0;
+			boolean cut = after > base - (alone ? 1 : 0);
+			Tests.check(cut == found.isArticulation(v), when + ": node "
+					+ v.nodeID + " is " + (cut ? "" : "not ")
+					+ "an articulation point");
+			if (cut)
+				articulations++;
+
+			Set<Integer> blocks = new HashSet<Integer>();
+			for (Segment a : v.getSegment()) {
+				if (graph.isClosed(a) || a.start == a.end)
+					continue;
+				blocks.add(found.block(a));
+				for (Segment b : v.getSegment()) {
+					if (graph.isClosed(b) || b.start == b.end)
+						continue;
+					boolean together = label[other(a, v).index] == label[other(b, v).index];
+					Tests.check(together == (found.block(a) == found.block(b)),
+							when + ": segments " + a.index + " and " + b.index
+									+ " at node " + v.nodeID + " should "
+									+ (together ? "" : "not ")
+									+ "be in the same block");
+				}
+			}
+			Tests.check((blocks.size() > 1) == cut, when + ": node "
+					+ v.nodeID + " is in " + blocks.size() + " blocks");
+		}
+		Tests.check(articulations == found.articulationCount(), when + ": "
+				+ found.articulationCount() + " articulation points, not "
+				+ articulations);
+
+		// a segment is a bridge if taking it out leaves more components, and
+		// it's then a block on its own.
+		int bridges = 0;
+		int[] size = new int[found.blockCount()];
+		for (Segment s : graph.segmentArray) {
+			if (graph.isClosed(s) || s.start == s.end) {
+				Tests.check(found.block(s) < 0, when + ": segment " + s.index
+						+ " shouldn't be in a block");
+				continue;
+			}
+			boolean bridge = components(graph, null, s, label) > base;
+			Tests.check(bridge == found.isBridge(s), when + ": segment "
+					+ s.index + " is " + (bridge ? "" : "not ") + "a bridge");
+			if (bridge)
+				bridges++;
+			size[found.block(s)]++;
+		}
+		Tests.check(bridges == found.bridgeCount(), when + ": "
+				+ found.bridgeCount() + " bridges, not " + bridges);
+		for (Segment s : graph.segmentArray)
+			if (found.block(s) >= 0)
+				Tests.check((size[found.block(s)] == 1) == found.isBridge(s),
+						when + ": bridge " + s.index + " isn't a block alone");
+		int used = 0;
+		for (int k : size)
+			if (k > 0)
+				used++;
+		Tests.check(used == found.blockCount(), when + ": " + used
+				+ " blocks have segments, not " + found.blockCount());
+	}
+
+	/**
+	 * Labels the connected components of the open segments, both ways,
+	 * without the given node or segment, and returns how many there are.
+	 */
+	private static int components(Graph graph, Node without, Segment skip,
+			int[] label) {
+		int n = graph.nodeArray.length, count = 0;
+		Arrays.fill(label, -1);
+		int[] queue = new int[n];
+		for (int root = 0; root < n; root++) {
+			if (label[root] >= 0 || without != null && root == without.index)
+				continue;
+			int head = 0, tail = 0;
+			label[root] = count;
+			queue[tail++] = root;
+			while (head < tail) {
+				int u = queue[head++];
+				for (Adjacency adj : new Adjacency[] { graph.forward,
+						graph.backward }) {
+					for (int e = adj.start(u); e < adj.end(u); e++) {
+						Segment s = graph.segmentArray[adj.segment[e]];
+						int v = adj.target[e];
+						if (s == skip || graph.isClosed(s) || label[v] >= 0
+								|| without != null && v == without.index)
+							continue;
+						label[v] = count;
+						queue[tail++] = v;
+					}
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private static int openSegments(Graph graph, Node v) {
+		int count = 0;
+		for (Segment s : v.getSegment())
+			if (!graph.isClosed(s) && s.start != s.end)
+				count++;
+		return count;
+	}
+
+	private static Node other(Segment seg, Node end) {
+		return seg.start == end ? seg.end : seg.start;
+	}
+}
+
+// code for COMP261 assignments
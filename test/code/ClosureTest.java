@@ -0,0 +1,259 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests closing and reopening segments: that the articulation points,
+ * bridges and blocks kept up to date as segments are closed and reopened at
+ * random are the same as working them out again from scratch, that the
+ * copies of them taken for other threads stay as they were taken, and that
+ * routes and distance matrices worked out on other threads while segments
+ * are being closed and reopened are all right for some set of closures.
+ */
+public class ClosureTest {
+
+	public static void main(String[] args) throws Exception {
+		randomClosures();
+		routingWhileClosing();
+	}
+
+	/**
+	 * Closes and reopens random segments, comparing everything against a
+	 * fresh build every so often.
+	 */
+	static void randomClosures() {
+		Graph graph = Tests.small();
+		double[] length = graph.forward.length.clone();
+		double[] time = graph.forward.time.clone();
+		Biconnectivity kept = graph.biconnectivity();
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		Random random = new Random(1);
+		List<Segment> closed = new ArrayList<Segment>();
+		Segment[] segments = graph.segmentArray;
+		// a copy of the weak points taken earlier, and what they were then.
+		Biconnectivity.WeakPoints earlier = null;
+		Biconnectivity earlierFresh = null;
+		try {
+			for (int op = 1; op <= 2000; op++) {
+				if (closed.isEmpty() || random.nextDouble() < 0.55) {
+					Segment s = segments[random.nextInt(segments.length)];
+					if (graph.closeSegment(s))
+						closed.add(s);
+				} else {
+					Segment s = closed.remove(random.nextInt(closed.size()));
+					Tests.check(graph.reopenSegment(s), "reopening failed");
+				}
+				Tests.check(graph.closedCount() == closed.size(),
+						"closed count " + graph.closedCount() + " not "
+								+ closed.size());
+				if (op % 50 == 0) {
+					Biconnectivity fresh = Biconnectivity.build(graph,
+							graph.closedSegments(), pool, 2);
+					compare(graph, kept, fresh, op);
+					Biconnectivity.WeakPoints points = graph.weakPoints();
+					compare(graph, points, fresh, op);
+					if (earlier != null)
+						compare(graph, earlier, earlierFresh, op);
+					earlier = points;
+					earlierFresh = fresh;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		for (Segment s : closed)
+			graph.reopenSegment(s);
+		Tests.check(graph.closedSegments() == null,
+				"nothing is closed but there's a closed set");
+
+		// the weights are never written to, whatever is closed.
+		Tests.check(Arrays.equals(length, graph.forward.length)
+				&& Arrays.equals(time, graph.forward.time),
+				"closures changed the edge weights");
+	}
+
+	private static void compare(Graph graph, Biconnectivity kept,
+			Biconnectivity fresh, int op) {
+		String at = "after " + op + " closures and reopenings: ";
+		Tests.check(kept.articulationCount() == fresh.articulationCount()
+				&& kept.bridgeCount() == fresh.bridgeCount()
+				&& kept.blockCount() == fresh.blockCount()
+				&& kept.componentCount() == fresh.componentCount(), at + kept
+				+ " but from scratch " + fresh);
+		for (Node v : graph.nodeArray)
+			Tests.check(kept.isArticulation(v) == fresh.isArticulation(v), at
+					+ "articulation point " + v.nodeID + " differs");
+
+		// the blocks can be numbered differently, but must pair up one to
+		// one.
+		Map<Integer, Integer> there = new HashMap<Integer, Integer>();
+		Map<Integer, Integer> back = new HashMap<Integer, Integer>();
+		for (Segment s : graph.segmentArray) {
+			Tests.check(kept.isBridge(s) == fresh.isBridge(s), at + "bridge "
+					+ s.index + " differs");
+			int a = kept.block(s), b = fresh.block(s);
+			Tests.check((a < 0) == (b < 0), at + "segment " + s.index
+					+ " is only in a block in one");
+			if (a < 0)
+				continue;
+			Integer was = there.put(a, b), wasBack = back.put(b, a);
+			Tests.check((was == null || was == b)
+					&& (wasBack == null || wasBack == a), at + "block "
+					+ a + " doesn't match up");
+		}
+	}
+
+	private static void compare(Graph graph, Biconnectivity.WeakPoints points,
+			Biconnectivity fresh, int op) {
+		String at = "after " + op + " closures and reopenings, a copy: ";
+		for (Node v : graph.nodeArray)
+			Tests.check(points.isArticulation(v) == fresh.isArticulation(v), at
+					+ "articulation point " + v.nodeID + " differs");
+		for (Segment s : graph.segmentArray)
+			Tests.check(points.isBridge(s) == fresh.isBridge(s), at + "bridge "
+					+ s.index + " differs");
+	}
+
+	/**
+	 * Routes and works out distance matrices on several threads while
+	 * another keeps closing and reopening segments. Some segments stay closed
+	 * throughout and others come and go, so every answer must be no shorter
+	 * than with only the first closed and no longer than with both closed.
+	 */
+	static void routingWhileClosing() throws InterruptedException {
+		final Graph graph = Tests.small();
+		final Router router = new Router(graph);
+		Random random = new Random(2);
+
+		// the segments closed throughout, and those that come and go, all
+		// from the middle of routes so that they make a difference.
+		final Set<Segment> always = new HashSet<Segment>();
+		final List<Segment> toggled = new ArrayList<Segment>();
+		while (always.size() + toggled.size() < 60) {
+			Router.Route r = router.route(randomNode(graph, random),
+					randomNode(graph, random), Router.Mode.BIDIRECTIONAL);
+			if (r.segments.size() < 3)
+				continue;
+			Segment s = r.segments.get(r.segments.size() / 2);
+			if (always.contains(s) || toggled.contains(s))
+				continue;
+			if (always.size() < 20)
+				always.add(s);
+			else
+				toggled.add(s);
+		}
+		for (Segment s : always)
+			graph.closeSegment(s);
+
+		// the pairs, with the shortest distance between them with only the
+		// first lot closed and with both.
+		final int pairs = 200;
+		final Node[] from = new Node[pairs], to = new Node[pairs];
+		final double[] low = new double[pairs], high = new double[pairs];
+		for (int i = 0; i < pairs; i++) {
+			from[i] = randomNode(graph, random);
+			to[i] = randomNode(graph, random);
+			low[i] = router.route(from[i], to[i], Router.Mode.UNIDIRECTIONAL).length;
+		}
+		for (Segment s : toggled)
+			graph.closeSegment(s);
+		for (int i = 0; i < pairs; i++)
+			high[i] = router.route(from[i], to[i], Router.Mode.UNIDIRECTIONAL).length;
+		for (Segment s : toggled)
+			graph.reopenSegment(s);
+
+		int threads = 4;
+		ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+		List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+		for (int w = 0; w < threads; w++) {
+			final int first = w;
+			workers.add(pool.submit(new Callable<Integer>() {
+				public Integer call() {
+					Router.Mode[] modes = Router.Mode.values();
+					for (int k = 0; k < 2000; k++) {
+						int i = (first * 31 + k) % pairs;
+						Router.Route r = router.route(from[i], to[i],
+								modes[k % modes.length]);
+						checkBetween(r.length, low[i], high[i], "route " + i);
+						if (!r.found())
+							continue;
+						Tests.checkPath(r, from[i], to[i]);
+						for (Segment s : r.segments)
+							Tests.check(!always.contains(s),
+									"a route used a closed segment");
+					}
+					return 0;
+				}
+			}));
+		}
+		workers.add(pool.submit(new Callable<Integer>() {
+			public Integer call() {
+				Node[] sources = new Node[20], targets = new Node[20];
+				System.arraycopy(from, 0, sources, 0, 20);
+				System.arraycopy(to, 0, targets, 0, 20);
+				for (int k = 0; k < 20; k++) {
+					double[] m = graph.distanceMatrix(sources, targets);
+					for (int i = 0; i < 20; i++)
+						checkBetween(m[i * 20 + i], low[i], high[i],
+								"matrix entry " + i);
+				}
+				return 0;
+			}
+		}));
+
+		// close and reopen the others until the searches are done.
+		Random flip = new Random(3);
+		int changes = 0;
+		while (!allDone(workers)) {
+			Segment s = toggled.get(flip.nextInt(toggled.size()));
+			if (graph.isClosed(s))
+				graph.reopenSegment(s);
+			else
+				graph.closeSegment(s);
+			changes++;
+		}
+		pool.shutdown();
+		for (Future<Integer> f : workers) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof AssertionError)
+					throw (AssertionError) e.getCause();
+				throw new RuntimeException("searching failed.", e.getCause());
+			}
+		}
+		Tests.check(changes > 0, "no segments were closed during the searches");
+	}
+
+	private static void checkBetween(double length, double low, double high,
+			String what) {
+		Tests.check((length >= low || Tests.close(length, low))
+				&& (length <= high || Tests.close(length, high)), what + " is "
+				+ length + ", not between " + low + " and " + high);
+	}
+
+	private static boolean allDone(List<Future<Integer>> workers) {
+		for (Future<Integer> f : workers)
+			if (!f.isDone())
+				return false;
+		return true;
+	}
+
+	private static Node randomNode(Graph graph, Random random) {
+		return graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,110 @@
+package code;
+
+import java.util.Random;
+
+/**
+ * Tests the component labels against reachability searches from a sample of
+ * nodes: that exactly the pairs with no route are turned away, including
+ * ones in the same connected component, that nodes with the same strong label
+ * can reach each other, and that the router answers the pairs that are
+ * turned away without searching. It does this on the open map and again
+ * after closing random segments.
+ */
+public class ComponentsTest {
+
+	public static void main(String[] args) {
+		Graph graph = Tests.small();
+		check(graph, "open");
+		Random random = new Random(11);
+		for (int i = 0; i < 300; i++)
+			graph.closeSegment(graph.segmentArray[random
+					.nextInt(graph.segmentArray.length)]);
+		check(graph, "after closures");
+	}
+
+	private static void check(Graph graph, String when) {
+		Components components = graph.components();
+		Router router = new Router(graph);
+		int n = graph.nodeArray.length;
+		Random random = new Random(12);
+		Tests.check(components.isExact(), when + ": " + components.strongCount()
+				+ " strong components is too many for exact labels");
+		int unreachable = 0, nearby = 0;
+		for (int i = 0; i < 60; i++) {
+			Node s = graph.nodeArray[random.nextInt(n)];
+			boolean[] reach = reach(graph, s.index, graph.forward);
+			boolean[] reachedBy = reach(graph, s.index, graph.backward);
+			for (int t = 0; t < n; t++) {
+				boolean may = components.mayReach(s.index, t);
+				Tests.check(may == reach[t], when + ": " + s.nodeID
+						+ (reach[t] ? " can" : " can't") + " reach "
+						+ graph.nodeArray[t].nodeID + " but it was"
+						+ (may ? " allowed" : " ruled out"));
+				if (!reach[t]) {
+					unreachable++;
+					// unreachable, though joined by roads the wrong way.
+					if (components.weak(s) == components
+							.weak(graph.nodeArray[t]))
+						nearby++;
+				}
+				boolean same = components.strong(s) == components
+						.strong(graph.nodeArray[t]);
+				Tests.check(same == (reach[t] && reachedBy[t]), when + ": "
+						+ s.nodeID + " and " + graph.nodeArray[t].nodeID
+						+ (same ? " share" : " don't share")
+						+ " a strong component");
+				if (reach[t] || reachedBy[t])
+					Tests.check(components.weak(s) == components
+							.weak(graph.nodeArray[t]), when + ": "
+							+ s.nodeID + " and " + graph.nodeArray[t].nodeID
+							+ " are connected but labelled apart");
+			}
+
+			// a pair that's ruled out isn't searched.
+			for (int k = 0; k < 20; k++) {
+				Node t = graph.nodeArray[random.nextInt(n)];
+				Router.Route r = router.route(s, t, Router.Mode.BIDIRECTIONAL);
+				Tests.check(r.found() == reach[t.index], when + ": route from "
+						+ s.nodeID + " to " + t.nodeID + " found wrongly");
+				if (!components.mayReach(s, t))
+					Tests.check(r.expanded == 0, when + ": a ruled out pair"
+							+ " was searched");
+			}
+		}
+		Tests.check(unreachable > 0 && nearby > 0, when + ": only "
+				+ unreachable + " unreachable pairs, " + nearby
+				+ " in the same component");
+
+		int nodes = 0;
+		for (int c = 0; c < components.weakCount(); c++)
+			nodes += components.weakSize(c);
+		Tests.check(nodes == n, when + ": the components have " + nodes
+				+ " nodes, not " + n);
+	}
+
+	/**
+	 * Returns which nodes can be reached from s along the adjacency's open
+	 * edges.
+	 */
+	private static boolean[] reach(Graph graph, int s, Adjacency adj) {
+		int n = graph.nodeArray.length;
+		boolean[] seen = new boolean[n];
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		seen[s] = true;
+		queue[tail++] = s;
+		while (head < tail) {
+			int u = queue[head++];
+			for (int e = adj.start(u); e < adj.end(u); e++) {
+				int v = adj.target[e];
+				if (!seen[v] && !graph.isClosed(graph.segmentArray[adj.segment[e]])) {
+					seen[v] = true;
+					queue[tail++] = v;
+				}
+			}
+		}
+		return seen;
+	}
+}
+
+// code for COMP261 assignments
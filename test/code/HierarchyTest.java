@@ -0,0 +1,71 @@
+package code;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Tests the contraction hierarchy: that its routes are as short as Dijkstra's,
+ * that it expands fewer nodes than the bidirectional search, and that a
+ * hierarchy saved by one load of the map still gives the same routes when
+ * it's read back by a load from the snapshot.
+ */
+public class HierarchyTest {
+
+	public static void main(String[] args) {
+		// start from the text files, so that the first graph is parsed and
+		// the second comes from the snapshot it writes.
+		File dir = Tests.copyOfSmall();
+		new File(dir, Snapshot.FILENAME).delete();
+		new File(dir, ContractionHierarchy.FILENAME).delete();
+
+		Graph parsed = Tests.small();
+		ContractionHierarchy built = parsed.hierarchy();
+		Tests.check(ContractionHierarchy.fileFor(parsed.sources[0]).exists(),
+				"the hierarchy wasn't saved");
+		Tests.check(built.shortcutCount() > 0, "no shortcuts were added");
+		long hierarchy = 0, bidirectional = 0;
+		Router router = new Router(parsed);
+		Random random = new Random(4);
+		int[][] pairs = new int[500][];
+		for (int i = 0; i < pairs.length; i++) {
+			Node s = parsed.nodeArray[random.nextInt(parsed.nodeArray.length)];
+			Node t = parsed.nodeArray[random.nextInt(parsed.nodeArray.length)];
+			pairs[i] = new int[] { s.nodeID, t.nodeID };
+			Router.Route plain = router.route(s, t, Router.Mode.UNIDIRECTIONAL);
+			Router.Route both = router.route(s, t, Router.Mode.BIDIRECTIONAL);
+			Router.Route fast = built.route(s, t);
+			Tests.check(Tests.close(plain.length, fast.length), "hierarchy route "
+					+ s.nodeID + " to " + t.nodeID + " is " + fast.length
+					+ ", not " + plain.length);
+			if (!fast.found())
+				continue;
+			Tests.checkPath(fast, s, t);
+			hierarchy += fast.expanded;
+			bidirectional += both.expanded;
+		}
+		Tests.check(hierarchy < bidirectional, "the hierarchy expanded "
+				+ hierarchy + " nodes, the bidirectional search only "
+				+ bidirectional);
+
+		// the second load numbers the nodes the same way, so the saved
+		// hierarchy still fits.
+		Graph loaded = Tests.small();
+		ContractionHierarchy read = loaded.hierarchy();
+		Tests.check(read.shortcutCount() == built.shortcutCount(),
+				"the hierarchy read back has " + read.shortcutCount()
+						+ " shortcuts, not " + built.shortcutCount());
+		for (int[] pair : pairs) {
+			Node s = loaded.nodes.get(pair[0]), t = loaded.nodes.get(pair[1]);
+			Router.Route fast = read.route(s, t);
+			Router.Route was = built.route(parsed.nodes.get(pair[0]),
+					parsed.nodes.get(pair[1]));
+			Tests.check(Tests.close(was.length, fast.length), "route "
+					+ pair[0] + " to " + pair[1] + " is " + fast.length
+					+ " after reloading, not " + was.length);
+			if (fast.found())
+				Tests.checkPath(fast, s, t);
+		}
+	}
+}
+
+// code for COMP261 assignments
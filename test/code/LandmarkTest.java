@@ -0,0 +1,80 @@
+package code;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests the landmark (ALT) bounds against distances from plain Dijkstra
+ * searches: that they never overestimate, that a landmark's own bound to a
+ * node is the exact distance, and that the A* searches using them still find
+ * shortest paths.
+ */
+public class LandmarkTest {
+
+	public static void main(String[] args) {
+		Graph graph = Tests.small();
+		Landmarks landmarks = graph.landmarks();
+		Tests.check(landmarks.size() == Landmarks.DEFAULT_COUNT, landmarks.size()
+				+ " landmarks, not " + Landmarks.DEFAULT_COUNT);
+		Set<Integer> distinct = new HashSet<Integer>();
+		for (int l = 0; l < landmarks.size(); l++)
+			distinct.add(landmarks.node(l));
+		Tests.check(distinct.size() == landmarks.size(),
+				"the same node was picked twice");
+
+		// the matrix is plain Dijkstra, with no heuristic.
+		Random random = new Random(7);
+		Node[] sources = new Node[30], targets = new Node[30];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+			targets[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+		}
+		double[] exact = graph.distanceMatrix(sources, targets);
+		int[] all = new int[landmarks.size()], active = new int[Landmarks.ACTIVE];
+		for (int l = 0; l < all.length; l++)
+			all[l] = l;
+		Router router = new Router(graph);
+		for (int i = 0; i < sources.length; i++) {
+			for (int j = 0; j < targets.length; j++) {
+				int s = sources[i].index, t = targets[j].index;
+				double d = exact[i * targets.length + j];
+				double bound = landmarks.lowerBound(s, t, all, all.length);
+				Tests.check(bound <= d || Tests.close(bound, d), "bound "
+						+ bound + " from " + sources[i].nodeID + " to "
+						+ targets[j].nodeID + " is over the distance " + d);
+				int used = landmarks.select(s, t, active);
+				Tests.check(Tests.close(landmarks.lowerBound(s, t, active, used),
+						bound), "the selected landmarks don't give the best bound");
+
+				for (Router.Mode mode : new Router.Mode[] {
+						Router.Mode.UNIDIRECTIONAL, Router.Mode.BIDIRECTIONAL }) {
+					Router.Route r = router.route(sources[i], targets[j], mode);
+					Tests.check(Tests.close(d, r.length), mode + " route from "
+							+ sources[i].nodeID + " to " + targets[j].nodeID
+							+ " is " + r.length + ", not " + d);
+				}
+			}
+		}
+
+		// a landmark's bound to a node it reaches is the distance itself.
+		Node[] from = new Node[landmarks.size()];
+		for (int l = 0; l < from.length; l++)
+			from[l] = graph.nodeArray[landmarks.node(l)];
+		double[] fromLandmarks = graph.distanceMatrix(from, targets);
+		for (int l = 0; l < from.length; l++) {
+			for (int j = 0; j < targets.length; j++) {
+				double d = fromLandmarks[l * targets.length + j];
+				if (Double.isInfinite(d))
+					continue;
+				double bound = landmarks.lowerBound(from[l].index,
+						targets[j].index, new int[] { l }, 1);
+				Tests.check(Tests.close(bound, d), "landmark " + l
+						+ " bounds its distance to " + targets[j].nodeID
+						+ " by " + bound + ", not " + d);
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,48 @@
+package code;
+
+import java.util.Random;
+
+/**
+ * Tests distance matrices against a search per pair, with some targets
+ * repeated and some sources that are also targets.
+ */
+public class MatrixTest {
+
+	public static void main(String[] args) {
+		Graph graph = Tests.small();
+		Router router = new Router(graph);
+		Random random = new Random(5);
+		Node[] nodes = graph.nodeArray;
+		Node[] sources = new Node[40], targets = new Node[30];
+		for (int i = 0; i < sources.length; i++)
+			sources[i] = nodes[random.nextInt(nodes.length)];
+		for (int j = 0; j < targets.length; j++)
+			targets[j] = j % 10 == 9 ? targets[j - 5] : j % 10 == 8 ? sources[j]
+					: nodes[random.nextInt(nodes.length)];
+
+		double[] matrix = graph.distanceMatrix(sources, targets);
+		Tests.check(matrix.length == sources.length * targets.length,
+				"matrix has " + matrix.length + " entries");
+		int unreachable = 0;
+		for (int i = 0; i < sources.length; i++) {
+			for (int j = 0; j < targets.length; j++) {
+				double want = router.route(sources[i], targets[j],
+						Router.Mode.UNIDIRECTIONAL).length;
+				double got = matrix[i * targets.length + j];
+				Tests.check(Tests.close(want, got), "distance from "
+						+ sources[i].nodeID + " to " + targets[j].nodeID
+						+ " is " + got + ", not " + want);
+				if (Double.isInfinite(got))
+					unreachable++;
+			}
+		}
+		Tests.check(unreachable < matrix.length, "nothing was reachable");
+
+		// no sources or no targets is an empty matrix, not an error.
+		Tests.check(graph.distanceMatrix(new Node[0], targets).length == 0
+				&& graph.distanceMatrix(sources, new Node[0]).length == 0,
+				"an empty matrix isn't empty");
+	}
+}
+
+// code for COMP261 assignments
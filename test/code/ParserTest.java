@@ -0,0 +1,79 @@
+package code;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests the parallel parse of the node and segment files against the
+ * sequential one, split into every number of ranges from one up to more
+ * than there are lines, so the range boundaries fall all over the files.
+ */
+public class ParserTest {
+
+	public static void main(String[] args) {
+		Graph graph = Tests.small();
+		File dir = Tests.copyOfSmall();
+		File nodeFile = new File(dir, Tests.FILES[0]);
+		File segmentFile = new File(dir, Tests.FILES[2]);
+
+		Map<Integer, Node> nodes = Parser.parseNodes(nodeFile, graph);
+		List<Segment> segments = new ArrayList<Segment>(Parser.parseSegments(
+				segmentFile, graph));
+		Geometry shapes = graph.geometry;
+		Tests.check(nodes.size() == graph.nodeArray.length, nodes.size()
+				+ " nodes parsed, not " + graph.nodeArray.length);
+		Tests.check(segments.size() == graph.segmentArray.length,
+				segments.size() + " segments parsed, not "
+						+ graph.segmentArray.length);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			int[] counts = { 1, 2, 3, 4, 5, 7, 16, 33, 100, 999, 1500, 2000 };
+			for (int chunks : counts) {
+				Map<Integer, Node> parallel = Parser.parseNodes(nodeFile, graph,
+						pool, chunks);
+				Tests.check(parallel.keySet().equals(nodes.keySet()), chunks
+						+ " ranges: the node IDs differ");
+				for (Node a : nodes.values()) {
+					Node b = parallel.get(a.nodeID);
+					Tests.check(a.location.x == b.location.x
+							&& a.location.y == b.location.y, chunks
+							+ " ranges: node " + a.nodeID + " differs");
+				}
+
+				List<Segment> list = new ArrayList<Segment>(
+						Parser.parseSegments(segmentFile, graph, pool, chunks));
+				Tests.check(list.size() == segments.size(), chunks
+						+ " ranges: " + list.size() + " segments");
+				for (int i = 0; i < list.size(); i++) {
+					Segment a = segments.get(i), b = list.get(i);
+					Tests.check(a.road == b.road && a.length == b.length
+							&& a.start == b.start && a.end == b.end, chunks
+							+ " ranges: segment " + i + " differs");
+				}
+				checkShapes(shapes, graph.geometry, chunks);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void checkShapes(Geometry want, Geometry got, int chunks) {
+		Tests.check(want.shapeCount() == got.shapeCount()
+				&& want.vertexCount() == got.vertexCount(), chunks
+				+ " ranges: " + got.shapeCount() + " shapes of "
+				+ got.vertexCount() + " points");
+		for (int i = 0; i <= want.shapeCount(); i++)
+			Tests.check(want.offset[i] == got.offset[i], chunks
+					+ " ranges: shape " + i + " starts at " + got.offset[i]);
+		for (int i = 0; i < 2 * want.vertexCount(); i++)
+			Tests.check(want.xy[i] == got.xy[i], chunks + " ranges: point "
+					+ i / 2 + " differs");
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,123 @@
+package code;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests turn restrictions. data/small has no restrictions file, so this bans
+ * the middle turn of some shortest routes and writes a file of them, then
+ * checks that each ban is read in once, and that every kind of search goes
+ * round it the same way.
+ */
+public class RestrictionTest {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		Graph open = Tests.small();
+		Router free = new Router(open);
+		Random random = new Random(6);
+
+		// the turns to ban, as from, via and to nodes, and the roads of the
+		// segments either side; and the routes that took them.
+		List<int[]> turns = new ArrayList<int[]>();
+		List<Node[]> pairs = new ArrayList<Node[]>();
+		while (turns.size() < 40) {
+			Node s = open.nodeArray[random.nextInt(open.nodeArray.length)];
+			Node t = open.nodeArray[random.nextInt(open.nodeArray.length)];
+			Router.Route r = free.route(s, t, Router.Mode.BIDIRECTIONAL);
+			if (r.segments.size() < 3)
+				continue;
+			int k = r.segments.size() / 2;
+			Node via = s;
+			for (int i = 0; i < k; i++)
+				via = other(r.segments.get(i), via);
+			Segment in = r.segments.get(k - 1), out = r.segments.get(k);
+			Node from = other(in, via), to = other(out, via);
+			// only turns with one segment each side, so the count is exact.
+			if (from == to || between(open, from, via) != 1
+					|| between(open, via, to) != 1 || banned(turns, from, via, to))
+				continue;
+			turns.add(new int[] { from.nodeID, in.road.roadID, via.nodeID,
+					out.road.roadID, to.nodeID });
+			pairs.add(new Node[] { s, t });
+		}
+
+		File file = new File(Tests.copyOfSmall(), "restrictions.tab");
+		PrintWriter writer = new PrintWriter(file);
+		writer.println("NodeID\tRoadID\tNodeID\tRoadID\tNodeID");
+		for (int i = 0; i < turns.size(); i++) {
+			int[] turn = turns.get(i);
+			// every fourth names the wrong roads, which should still find
+			// the segments between the nodes.
+			int roadFix = i % 4 == 3 ? -1 : 0;
+			writer.println(turn[0] + "\t" + (turn[1] + roadFix) + "\t"
+					+ turn[2] + "\t" + (turn[3] + roadFix) + "\t" + turn[4]);
+		}
+		// and one with a node that isn't in the map.
+		writer.println("-7\t1\t" + turns.get(0)[2] + "\t1\t" + turns.get(0)[4]);
+		writer.close();
+
+		Graph graph = Tests.small(file);
+		TurnRestrictions banned = graph.restrictions;
+		Tests.check(banned.size() == turns.size(), banned.size()
+				+ " turns banned, not " + turns.size());
+		Tests.check(banned.unresolved == 1, banned.unresolved
+				+ " restrictions unresolved, not 1");
+
+		Router router = new Router(graph);
+		int longer = 0;
+		for (int i = 0; i < pairs.size(); i++) {
+			Node s = graph.nodes.get(pairs.get(i)[0].nodeID);
+			Node t = graph.nodes.get(pairs.get(i)[1].nodeID);
+			double unrestricted = free.route(pairs.get(i)[0], pairs.get(i)[1],
+					Router.Mode.BIDIRECTIONAL).length;
+			Router.Route best = router.route(s, t, Router.Mode.EDGE_BASED);
+			Tests.check(best.length >= unrestricted, "a restricted route is "
+					+ "shorter than the unrestricted one");
+			if (!Tests.close(best.length, unrestricted))
+				longer++;
+			for (Router.Mode mode : Router.Mode.values()) {
+				Router.Route r = router.route(s, t, mode);
+				Tests.check(Tests.close(best.length, r.length), mode
+						+ " route " + s.nodeID + " to " + t.nodeID + " is "
+						+ r.length + ", not " + best.length);
+				if (!r.found())
+					continue;
+				Tests.checkPath(r, s, t);
+				Tests.check(banned.isLegal(s, r.segments), mode + " route "
+						+ s.nodeID + " to " + t.nodeID + " takes a banned turn");
+			}
+		}
+		Tests.check(longer > 0, "no ban made any route longer");
+	}
+
+	private static Node other(Segment seg, Node end) {
+		return seg.start == end ? seg.end : seg.start;
+	}
+
+	/**
+	 * Returns how many segments can be driven from a to b.
+	 */
+	private static int between(Graph graph, Node a, Node b) {
+		int count = 0;
+		Adjacency out = graph.forward;
+		for (int e = out.start(a.index); e < out.end(a.index); e++)
+			if (out.target[e] == b.index)
+				count++;
+		return count;
+	}
+
+	private static boolean banned(List<int[]> turns, Node from, Node via,
+			Node to) {
+		for (int[] turn : turns)
+			if (turn[0] == from.nodeID && turn[2] == via.nodeID
+					&& turn[4] == to.nodeID)
+				return true;
+		return false;
+	}
+}
+
+// code for COMP261 assignments
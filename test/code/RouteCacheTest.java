@@ -0,0 +1,133 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the route cache: hits and misses, that it's keyed on the mode and
+ * profile, that closing and reopening a segment empties it, that it keeps to
+ * its entry and memory limits while keeping the routes in use, and that
+ * threads sharing it get the same routes as searching.
+ */
+public class RouteCacheTest {
+
+	public static void main(String[] args) throws InterruptedException {
+		final Graph graph = Tests.small();
+		final Router router = new Router(graph);
+		Random random = new Random(9);
+		final Node[] from = new Node[600], to = new Node[600];
+		for (int i = 0; i < from.length; i++) {
+			from[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+			to[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+		}
+		Router.Mode mode = Router.Mode.BIDIRECTIONAL;
+		Router.Profile distance = Router.Profile.DISTANCE;
+
+		// a miss, then a hit with the same route, and a miss for the other
+		// profile and for another mode.
+		RouteCache cache = new RouteCache(graph, 1000, 1 << 20);
+		int p = longRoute(router, from, to);
+		Router.Route first = cache.route(router, from[p], to[p], mode, distance);
+		Router.Route again = cache.route(router, from[p], to[p], mode, distance);
+		Tests.check(cache.misses() == 1 && cache.hits() == 1, cache.toString());
+		Tests.check(again.length == first.length
+				&& again.segments.equals(first.segments),
+				"the cached route differs");
+		Tests.check(!first.cached && again.cached && again.expanded == 0,
+				"a hit isn't marked as cached");
+		cache.route(router, from[p], to[p], mode, Router.Profile.TIME);
+		Tests.check(cache.misses() == 2 && cache.size() == 2, cache.toString());
+		Router.Route other = cache.route(router, from[p], to[p],
+				Router.Mode.UNIDIRECTIONAL, distance);
+		Tests.check(cache.misses() == 3 && !other.cached && other.expanded > 0,
+				"another mode's route was used");
+		Tests.check(Tests.close(other.length, first.length),
+				"the modes' routes differ");
+
+		// closing a segment on the route empties the cache, so the next
+		// route goes round it, and reopening it brings the old route back.
+		Segment cut = first.segments.get(first.segments.size() / 2);
+		graph.closeSegment(cut);
+		Router.Route round = cache.route(router, from[p], to[p], mode, distance);
+		Tests.check(cache.misses() == 4 && !round.segments.contains(cut),
+				"a cached route was used after a closure");
+		Tests.check(round.length >= first.length, "the way round is shorter");
+		graph.reopenSegment(cut);
+		Router.Route back = cache.route(router, from[p], to[p], mode, distance);
+		Tests.check(cache.misses() == 5 && back.length == first.length,
+				"a cached route was used after reopening");
+
+		// with room for ten routes a shard, routes asked for after every new
+		// one are never evicted.
+		cache = new RouteCache(graph, 160, 1 << 20);
+		int hot = 10;
+		for (int i = hot; i < from.length; i++) {
+			cache.route(router, from[i], to[i], mode, distance);
+			for (int j = 0; j < hot; j++)
+				cache.route(router, from[j], to[j], mode, distance);
+		}
+		Tests.check(cache.size() <= 160, cache.size() + " routes cached");
+		Tests.check(cache.misses() == from.length, cache.misses()
+				+ " misses, not one for each pair");
+		Tests.check(cache.evictions() == from.length - cache.size(),
+				cache.evictions() + " evicted");
+
+		// a shard of 300 bytes has room for two routes at most.
+		cache = new RouteCache(graph, 1000, 16 * 300);
+		for (int i = 0; i < from.length; i++)
+			cache.route(router, from[i], to[i], mode, distance);
+		Tests.check(cache.size() <= 32, cache.size() + " routes in 4800 bytes");
+
+		// threads sharing a cache get the routes a search finds.
+		final RouteCache shared = new RouteCache(graph, 200, 1 << 20);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+		for (int w = 0; w < 4; w++) {
+			final int step = 2 * w + 1;
+			workers.add(pool.submit(new Callable<Integer>() {
+				public Integer call() {
+					for (int k = 0; k < 2000; k++) {
+						int i = k * step % 300;
+						Router.Route r = shared.route(router, from[i], to[i],
+								Router.Mode.BIDIRECTIONAL,
+								Router.Profile.DISTANCE);
+						Router.Route want = router.route(from[i], to[i],
+								Router.Mode.BIDIRECTIONAL);
+						Tests.check(r.length == want.length, "a shared route"
+								+ " is " + r.length + ", not " + want.length);
+					}
+					return 0;
+				}
+			}));
+		}
+		pool.shutdown();
+		for (Future<Integer> f : workers) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof AssertionError)
+					throw (AssertionError) e.getCause();
+				throw new RuntimeException("routing failed.", e.getCause());
+			}
+		}
+		Tests.check(shared.hits() > 0, "no shared route was a hit");
+	}
+
+	/**
+	 * Returns a pair with a route of a few segments at least.
+	 */
+	private static int longRoute(Router router, Node[] from, Node[] to) {
+		for (int i = 0;; i++)
+			if (router.route(from[i], to[i], Router.Mode.BIDIRECTIONAL).segments
+					.size() >= 3)
+				return i;
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,137 @@
+package code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests every routing mode, for both profiles, against a plain Dijkstra
+ * search written out here, and that many threads routing on one Router at
+ * once get the same answers as one thread does.
+ */
+public class RouterTest {
+
+	public static void main(String[] args) throws InterruptedException {
+		final Graph graph = Tests.small();
+		final Router router = new Router(graph);
+		Random random = new Random(8);
+		final int pairs = 300;
+		final Node[] from = new Node[pairs], to = new Node[pairs];
+		for (int i = 0; i < pairs; i++) {
+			from[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+			to[i] = graph.nodeArray[random.nextInt(graph.nodeArray.length)];
+		}
+
+		final Router.Profile[] profiles = Router.Profile.values();
+		final Router.Mode[] modes = Router.Mode.values();
+		final double[][] want = new double[profiles.length][pairs];
+		int found = 0;
+		for (Router.Profile profile : profiles) {
+			double[] weight = profile == Router.Profile.TIME ? graph.forward.time
+					: graph.forward.length;
+			for (int i = 0; i < pairs; i++) {
+				double d = dijkstra(graph.forward, weight, from[i].index,
+						to[i].index);
+				want[profile.ordinal()][i] = d;
+				if (d < Double.POSITIVE_INFINITY)
+					found++;
+				for (Router.Mode mode : modes) {
+					Router.Route r = router.route(from[i], to[i], mode, profile);
+					Tests.check(Tests.close(d, r.length), mode + " " + profile
+							+ " route " + from[i].nodeID + " to " + to[i].nodeID
+							+ " is " + r.length + ", not " + d);
+					if (!r.found())
+						continue;
+					if (profile == Router.Profile.DISTANCE) {
+						Tests.checkPath(r, from[i], to[i]);
+					} else {
+						double hours = 0;
+						for (Segment seg : r.segments)
+							hours += seg.length / seg.road.speedKmh();
+						Tests.check(Tests.close(hours, r.length), mode
+								+ " route takes " + hours + " hours, not "
+								+ r.length);
+					}
+				}
+			}
+		}
+		Tests.check(found > 0, "no pair had a route");
+
+		// the same queries on several threads at once, in different orders.
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> workers = new ArrayList<Future<Integer>>();
+		for (int w = 0; w < 4; w++) {
+			final int step = 2 * w + 1;
+			workers.add(pool.submit(new Callable<Integer>() {
+				public Integer call() {
+					for (int k = 0; k < 3 * pairs; k++) {
+						int i = k * step % pairs;
+						Router.Mode mode = modes[k % modes.length];
+						Router.Profile profile = profiles[k / modes.length
+								% profiles.length];
+						double d = want[profile.ordinal()][i];
+						Router.Route r = router.route(from[i], to[i], mode,
+								profile);
+						Tests.check(Tests.close(d, r.length), mode + " "
+								+ profile + " route on a worker is "
+								+ r.length + ", not " + d);
+					}
+					return 0;
+				}
+			}));
+		}
+		pool.shutdown();
+		for (Future<Integer> f : workers) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof AssertionError)
+					throw (AssertionError) e.getCause();
+				throw new RuntimeException("routing failed.", e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * Textbook Dijkstra with a binary heap of (distance, node) pairs and lazy
+	 * deletion, sharing nothing with Router.
+	 */
+	static double dijkstra(Adjacency out, double[] weight, int s, int t) {
+		double[] dist = new double[out.offset.length - 1];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		PriorityQueue<double[]> queue = new PriorityQueue<double[]>(16,
+				new Comparator<double[]>() {
+					public int compare(double[] a, double[] b) {
+						return Double.compare(a[0], b[0]);
+					}
+				});
+		dist[s] = 0;
+		queue.add(new double[] { 0, s });
+		while (!queue.isEmpty()) {
+			double[] top = queue.poll();
+			int u = (int) top[1];
+			if (top[0] > dist[u])
+				continue;
+			if (u == t)
+				return dist[u];
+			for (int e = out.start(u); e < out.end(u); e++) {
+				double cost = dist[u] + weight[e];
+				if (cost < dist[out.target[e]]) {
+					dist[out.target[e]] = cost;
+					queue.add(new double[] { cost, out.target[e] });
+				}
+			}
+		}
+		return dist[t];
+	}
+}
+
+// code for COMP261 assignments
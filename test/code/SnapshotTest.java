@@ -0,0 +1,89 @@
+package code;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tests that a graph loaded from a Snapshot is the same as one parsed from
+ * the text files: every node, road and segment, and the segment shapes, and
+ * that a snapshot that goes bad partway through leaves the graph alone.
+ */
+public class SnapshotTest {
+
+	public static void main(String[] args) throws IOException {
+		File snapshot = new File(Tests.copyOfSmall(), Snapshot.FILENAME);
+		snapshot.delete();
+		Graph parsed = Tests.small();
+		Tests.check(snapshot.exists(), "no snapshot was written");
+		Graph loaded = Tests.small();
+
+		Tests.check(parsed.nodeArray.length == loaded.nodeArray.length,
+				"node counts differ");
+		for (int i = 0; i < parsed.nodeArray.length; i++) {
+			Node a = parsed.nodeArray[i], b = loaded.nodeArray[i];
+			Tests.check(a.nodeID == b.nodeID && a.location.x == b.location.x
+					&& a.location.y == b.location.y, "node " + a.nodeID
+					+ " differs");
+		}
+
+		Tests.check(parsed.roads.keySet().equals(loaded.roads.keySet()),
+				"the roads differ");
+		for (Road a : parsed.roads.values()) {
+			Road b = loaded.roads.get(a.roadID);
+			Tests.check(a.name.equals(b.name) && a.city.equals(b.city)
+					&& a.type == b.type && a.oneway == b.oneway
+					&& a.speed == b.speed && a.roadclass == b.roadclass
+					&& a.notforcar == b.notforcar
+					&& a.notforpede == b.notforpede
+					&& a.notforbicy == b.notforbicy
+					&& a.components.size() == b.components.size(), "road "
+					+ a.roadID + " differs");
+		}
+
+		Tests.check(parsed.segmentArray.length == loaded.segmentArray.length,
+				"segment counts differ");
+		for (int i = 0; i < parsed.segmentArray.length; i++) {
+			Segment a = parsed.segmentArray[i], b = loaded.segmentArray[i];
+			Tests.check(a.road.roadID == b.road.roadID && a.length == b.length
+					&& a.start.nodeID == b.start.nodeID
+					&& a.end.nodeID == b.end.nodeID, "segment " + i + " differs");
+		}
+		Tests.check(Arrays.equals(parsed.geometry.offset, loaded.geometry.offset)
+				&& Arrays.equals(parsed.geometry.xy, loaded.geometry.xy),
+				"the segment shapes differ");
+
+		// a snapshot with a good checksum whose one segment is on a road it
+		// doesn't have.
+		File dir = Tests.copyOfSmall();
+		File[] sources = new File[3];
+		for (int i = 0; i < sources.length; i++)
+			sources[i] = new File(dir, Tests.FILES[i]);
+		File bad = new File(dir, "bad.snapshot");
+		bad.deleteOnExit();
+		Snapshot.write(bad, 0x4D415053, 3, sources, new Snapshot.Body() {
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(1);
+				out.writeInt(7);
+				out.writeDouble(0);
+				out.writeDouble(0);
+				out.writeInt(0);
+				out.writeInt(1);
+				out.writeInt(-1);
+				out.writeDouble(1);
+				out.writeInt(7);
+				out.writeInt(7);
+			}
+		});
+		Object nodes = loaded.nodes, roads = loaded.roads;
+		Object segments = loaded.segments, geometry = loaded.geometry;
+		Tests.check(!Snapshot.load(bad, sources, loaded),
+				"a bad snapshot was loaded");
+		Tests.check(loaded.nodes == nodes && loaded.roads == roads
+				&& loaded.segments == segments && loaded.geometry == geometry,
+				"a bad snapshot changed the graph");
+	}
+}
+
+// code for COMP261 assignments
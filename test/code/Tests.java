@@ -0,0 +1,136 @@
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Runs all the tests, against the small map in data/small. There's no test
+ * framework on the build path, so each test is a class with a main method
+ * that throws an AssertionError at the first thing it finds wrong, and this
+ * runs them all and reports which failed. Build and run from the top of the
+ * project with
+ *
+ *   javac -d out src/code/*.java test/code/*.java
+ *   java -cp out code.Tests
+ */
+public class Tests {
+
+	// the names of the map files, which are the same in every data directory.
+	static final String[] FILES = { "nodeID-lat-lon.tab", "roadID-roadInfo.tab",
+			"roadSeg-roadID-length-nodeID-nodeID-coords.tab" };
+
+	// a copy of data/small, so that the snapshot and hierarchy the graph saves
+	// don't end up in the project.
+	private static File data;
+
+	public static void main(String[] args) {
+		String[] tests = { "BiconnectivityTest", "ClosureTest", "ComponentsTest",
+				"HierarchyTest", "LandmarkTest", "MatrixTest", "ParserTest",
+				"RestrictionTest", "RouteCacheTest", "RouterTest", "SnapshotTest",
+				"TokenizerTest" };
+		int failed = 0;
+		for (String name : tests) {
+			long begin = System.nanoTime();
+			try {
+				Class.forName("code." + name).getMethod("main", String[].class)
+						.invoke(null, (Object) new String[0]);
+				System.out.printf("%-24s ok (%d ms)%n", name,
+						(System.nanoTime() - begin) / 1000000);
+			} catch (java.lang.reflect.InvocationTargetException e) {
+				failed++;
+				System.out.printf("%-24s FAILED: %s%n", name, e.getCause());
+				e.getCause().printStackTrace();
+			} catch (ReflectiveOperationException e) {
+				throw new RuntimeException("running " + name + " failed.", e);
+			}
+		}
+		System.out.println(failed == 0 ? "all " + tests.length + " passed"
+				: failed + " of " + tests.length + " failed");
+		if (failed > 0)
+			System.exit(1);
+	}
+
+	/**
+	 * Loads a fresh copy of the small map, with no closures, so that tests
+	 * that close segments don't affect each other.
+	 */
+	static Graph small() {
+		return small(null);
+	}
+
+	/**
+	 * As above, with the turn restrictions from a file, which may be null.
+	 */
+	static Graph small(File restrictions) {
+		File dir = copyOfSmall();
+		return new Graph(new File(dir, FILES[0]), new File(dir, FILES[1]),
+				new File(dir, FILES[2]), null, restrictions);
+	}
+
+	/**
+	 * Returns the directory the small map is copied to, copying it the first
+	 * time.
+	 */
+	static synchronized File copyOfSmall() {
+		if (data != null)
+			return data;
+		try {
+			File dir = Files.createTempDirectory("mapper-test").toFile();
+			dir.deleteOnExit();
+			// files are deleted in the reverse of the order they're
+			// registered, so these go before the directory does.
+			for (String name : new String[] { Snapshot.FILENAME,
+					ContractionHierarchy.FILENAME, "restrictions.tab" })
+				new File(dir, name).deleteOnExit();
+			for (String name : FILES) {
+				File copy = new File(dir, name);
+				Files.copy(new File("data/small", name).toPath(),
+						copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				copy.deleteOnExit();
+			}
+			data = dir;
+			return dir;
+		} catch (IOException e) {
+			throw new RuntimeException("copying data/small failed.", e);
+		}
+	}
+
+	static void check(boolean ok, String what) {
+		if (!ok)
+			throw new AssertionError(what);
+	}
+
+	/**
+	 * Checks that a route is a path from start to goal, one segment after
+	 * another, whose length is the sum of its segments' lengths.
+	 */
+	static void checkPath(Router.Route route, Node start, Node goal) {
+		String pair = start.nodeID + " to " + goal.nodeID;
+		check(route.found(), "no route from " + pair);
+		List<Segment> path = route.segments;
+		Node at = start;
+		double length = 0;
+		for (Segment seg : path) {
+			check(seg.start == at || seg.end == at, "route from " + pair
+					+ " jumps at " + at.nodeID);
+			at = seg.start == at ? seg.end : seg.start;
+			length += seg.length;
+		}
+		check(at == goal, "route from " + pair + " ends at " + at.nodeID);
+		check(close(length, route.length), "route length " + route.length
+				+ " but its segments add up to " + length);
+	}
+
+	/**
+	 * Returns whether two distances are the same but for rounding, counting
+	 * infinity as the same as itself.
+	 */
+	static boolean close(double a, double b) {
+		return a == b || Math.abs(a - b) <= 1e-9 * Math.max(1, Math.abs(a));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,129 @@
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Tests the Tokenizer's number parsing against Double.parseDouble, bit for
+ * bit: every coordinate and length in the small map, awkward spellings, long
+ * mantissas, values exactly halfway between two doubles and either side of
+ * them, and random decimals of every length.
+ */
+public class TokenizerTest {
+
+	public static void main(String[] args) throws IOException {
+		// every number in the node and segment files.
+		int count = 0;
+		for (int f : new int[] { 0, 2 }) {
+			File file = new File("data/small", Tests.FILES[f]);
+			boolean header = f == 2;
+			for (String line : Files.readAllLines(file.toPath(),
+					StandardCharsets.UTF_8)) {
+				if (header) {
+					header = false;
+					continue;
+				}
+				String[] tokens = line.trim().split("\t");
+				// the node file is ID, lat, lon; the segment file is road
+				// ID, length, two node IDs, then coordinates.
+				for (int i = 1; i < tokens.length; i++) {
+					if (f == 2 && (i == 2 || i == 3))
+						continue;
+					check(tokens[i]);
+					count++;
+				}
+			}
+		}
+		Tests.check(count > 10000, "only " + count + " numbers in the map");
+
+		String[] awkward = { "0", "-0", "+0", "0.0", "-0.0", ".5", "-.5",
+				"+.25", "5.", "-5.", "000123.4500", "1.000000000000000000",
+				"-36.871900", "174.693080", "0.1", "0.2", "0.3", "-0.1",
+				"1.7976931348623157", "4.9", "123456789012345678",
+				"1234567890123456789", "0.00000000000000000000001",
+				"0.1234567890123456789", "12345678901234567.8",
+				"99999999999999999", "9999999999999999.9",
+				"0.30000000000000004", "2.2250738585072014",
+				"1e10", "-1.5E-3", "2.5e+2" };
+		for (String s : awkward)
+			check(s);
+
+		// 2^53 + 1 and its neighbours are halfway between two doubles once
+		// they have a fractional part, and round to the even one.
+		long[] halfway = { (1L << 53) + 1, (1L << 53) + 3, (1L << 53) + 5,
+				(1L << 54) + 2, (1L << 54) + 6, 9999999999999999L };
+		for (long m : halfway) {
+			for (long k = m - 2; k <= m + 2; k++) {
+				check(k + ".0");
+				check("-" + k + ".0");
+				check(k + ".00");
+				check((k / 10) + "." + (k % 10));
+				check((k / 100) + "." + String.format("%02d", k % 100));
+			}
+		}
+
+		// the decimals that print for random doubles, and random digit
+		// strings of every length with the point anywhere.
+		Random random = new Random(13);
+		for (int i = 0; i < 100000; i++) {
+			double d = Double.longBitsToDouble(random.nextLong() >>> 2 | 1L << 61);
+			check(Double.toString(d / (1L << 40)));
+		}
+		for (int i = 0; i < 200000; i++) {
+			int digits = 1 + random.nextInt(20);
+			StringBuilder sb = new StringBuilder();
+			if (random.nextBoolean())
+				sb.append('-');
+			for (int j = 0; j < digits; j++)
+				sb.append((char) ('0' + random.nextInt(10)));
+			sb.insert(sb.length() - random.nextInt(digits + 1), '.');
+			check(sb.toString());
+		}
+
+		// numbers ended by a character other than a separator, as in the
+		// polygon file.
+		Tokenizer tokens = tokenizer("(-36.78826,174.62689)");
+		tokens.nextLine();
+		Tests.check(tokens.skip("(") && tokens.nextDouble(',') == -36.78826
+				&& tokens.nextDouble(')') == 174.62689,
+				"a bracketed pair parsed wrongly");
+
+		for (String bad : new String[] { "-", ".", "1.2.3", "12a", "--1" }) {
+			tokens = tokenizer(bad);
+			tokens.nextLine();
+			try {
+				tokens.nextDouble();
+				Tests.check(false, "\"" + bad + "\" parsed as a number");
+			} catch (NumberFormatException e) {
+				// as it should.
+			}
+		}
+	}
+
+	/**
+	 * Checks that the Tokenizer reads s as the same double Double.parseDouble
+	 * does, down to the sign of zero.
+	 */
+	private static void check(String s) {
+		Tokenizer tokens = tokenizer(s);
+		try {
+			tokens.nextLine();
+		} catch (IOException e) {
+			throw new RuntimeException("reading failed.", e);
+		}
+		double got = tokens.nextDouble(), want = Double.parseDouble(s);
+		Tests.check(Double.doubleToRawLongBits(got) == Double
+				.doubleToRawLongBits(want), "\"" + s + "\" parsed as " + got
+				+ ", not " + want);
+	}
+
+	private static Tokenizer tokenizer(String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+		return new Tokenizer(bytes, 0, bytes.length);
+	}
+}
+
+// code for COMP261 assignments